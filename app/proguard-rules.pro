@@ -15,3 +15,20 @@
 #-keepclassmembers class fqcn.of.javascript.interface.for.webview {
 #   public *;
 #}
+
+# The release DebugInjectorImpl does nothing. MainActivity only calls the injector behind
+# BuildConfig.DEBUG, which javac already drops, so the shrinker removes the whole injector
+# package. Calls outside such a check go away as well as long as their result is unused.
+# verifyReleaseDebugInjectorRemoved fails the build if anything from the package is left.
+-assumenosideeffects class com.blackpixel.debuglocale.injector.DebugInjector {
+    public static com.blackpixel.debuglocale.injector.DebugInjector getInstance(android.content.Context);
+    public void startSettingsActivity(android.app.Activity);
+    public boolean overrideLocale(android.app.Activity);
+    public android.content.Context wrapBaseContext(android.content.Context);
+    public void setMetricsSink(com.blackpixel.debuglocale.injector.MetricsSink);
+    public void setConfigurationOverrides(com.blackpixel.debuglocale.injector.ConfigurationOverrides);
+    public com.blackpixel.debuglocale.injector.ConfigurationOverrides getConfigurationOverrides();
+    public void traceBegin(java.lang.String);
+    public void traceEnd(java.lang.String);
+    public com.blackpixel.debuglocale.injector.DebugSettings getSettings();
+}
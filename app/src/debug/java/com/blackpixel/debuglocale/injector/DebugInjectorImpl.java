@@ -22,15 +22,42 @@
 package com.blackpixel.debuglocale.injector;
 
 import android.app.Activity;
+import android.app.Application;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.content.res.Resources;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.MainThread;
 import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
 
+import com.blackpixel.debuglocale.BuildConfig;
+import com.blackpixel.debuglocale.DateFormatCache;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class DebugInjectorImpl extends DebugInjector {
+public class DebugInjectorImpl extends DebugInjector
+        implements DebugSettingsStore.OnSettingChangedListener {
 
     private final static String PREFS_DEBUG_SETTINGS = "com.blackpixel.debuglocale.injector.pref_debug_setting";
 
@@ -38,13 +65,364 @@ public class DebugInjectorImpl extends DebugInjector {
     final static String PREF_DEBUG_LOCALE = "pref_debug_locale";
 
     @VisibleForTesting
-    SharedPreferences sharedPrefs;
+    final static int LOCALIZED_RESOURCES_CACHE_SIZE = 4;
+
+    @VisibleForTesting
+    final static DebugKey.IntKey LAYOUT_DIRECTION = DebugKey.intKey(
+            "pref_debug_layout_direction", ConfigurationOverrides.LAYOUT_DIRECTION_LOCALE);
+
+    /**
+     * The registry has no float keys, so the font scale is stored in percent. 0 keeps the system
+     * font scale.
+     */
+    @VisibleForTesting
+    final static DebugKey.IntKey FONT_SCALE_PERCENT = DebugKey.intKey(
+            "pref_debug_font_scale_percent", 0);
+
+    @VisibleForTesting
+    final static DebugKey.IntKey NIGHT_MODE = DebugKey.intKey(
+            "pref_debug_night_mode", ConfigurationOverrides.NIGHT_MODE_SYSTEM);
+
+    // bits returned by diff()
+    @VisibleForTesting
+    final static int CHANGE_LOCALE = 1;
+    @VisibleForTesting
+    final static int CHANGE_LAYOUT_DIRECTION = 1 << 1;
+    @VisibleForTesting
+    final static int CHANGE_FONT_SCALE = 1 << 2;
+    @VisibleForTesting
+    final static int CHANGE_NIGHT_MODE = 1 << 3;
+
+    /**
+     * Changes a registered Activity takes in place. The others need its layout inflated again.
+     */
+    @VisibleForTesting
+    final static int IN_PLACE_CHANGES = CHANGE_LOCALE;
+
+    @VisibleForTesting
+    final static int TRACE_CAPACITY = 4096;
+
+    @VisibleForTesting
+    final static String TRACE_INIT = "DebugInjector.init";
+    @VisibleForTesting
+    final static String TRACE_LOAD_OVERRIDE = "loadOverride";
+    @VisibleForTesting
+    final static String TRACE_OVERRIDE_LOCALE = "overrideLocale";
+    @VisibleForTesting
+    final static String TRACE_APPLY_CONFIGURATION = "applyConfiguration";
+    @VisibleForTesting
+    final static String TRACE_UPDATE_CONFIGURATION = "updateConfiguration";
+    @VisibleForTesting
+    final static String TRACE_APPLY_SETTINGS = "applySettings";
+    @VisibleForTesting
+    final static String TRACE_REBIND = "rebindInPlace";
+
+    /**
+     * Told once the settings passed to {@link #applySettings(Map, Activity,
+     * OnSettingsAppliedListener)} are active.
+     */
+    interface OnSettingsAppliedListener {
+        /**
+         * @param snapshot the snapshot now in use
+         * @param applied false if the resumed Activity has not caught up with it yet. The
+         *                snapshot is published and applies on its next resume regardless.
+         */
+        void onSettingsApplied(LocaleSnapshot snapshot, boolean applied);
+    }
+
+    @VisibleForTesting
+    DebugSettingsStore settingsStore;
+
+    @VisibleForTesting
+    PreferenceWriteBehind settingsWriter;
 
     @VisibleForTesting
     Locale originalDefaultLocale;
 
+    /**
+     * System values restored once an override is reset, captured before the first override is
+     * applied. NaN until then.
+     */
+    @VisibleForTesting
+    float originalFontScale = Float.NaN;
+
+    @VisibleForTesting
+    int originalNightMode;
+
+    /**
+     * Overrides published with the next snapshot, only written while holding this.
+     */
+    private volatile ConfigurationOverrides configurationOverrides = ConfigurationOverrides.NONE;
+
+    /**
+     * Resolved override, or null until the first resume resolves it. Only replaced when the
+     * stored locale code changes, so the resume path is a reference comparison.
+     */
+    @VisibleForTesting
+    volatile LocaleSnapshot localeSnapshot;
+
+    /**
+     * Values of every registered DebugKey, or null until first requested.
+     */
+    @VisibleForTesting
+    volatile DebugSettings settings;
+
+    /**
+     * Time the constructor spent blocked on an unfinished preload, zero if it was already done
+     * and -1 without a preload.
+     */
+    @VisibleForTesting
+    long preloadWaitNanos = -1;
+
+    /**
+     * Time the constructor took, kept to report it to sinks set afterwards.
+     */
+    private long firstInstanceNanos;
+
+    /**
+     * Localized Resources handed to activities using {@link #wrapBaseContext(Context)}, in LRU
+     * order. Switching back to a recently used locale reuses its warm resource tables.
+     */
+    @VisibleForTesting
+    final Map<Locale, Resources> localizedResources =
+            new LinkedHashMap<Locale, Resources>(LOCALIZED_RESOURCES_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Locale, Resources> eldest) {
+                    return size() > LOCALIZED_RESOURCES_CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Overrides the cached localized Resources were built with, guarded by localizedResources.
+     */
+    private ConfigurationOverrides localizedResourcesOverrides;
+
+    /**
+     * Snapshot generation each Activity last applied. Only touched from the main thread.
+     */
+    @VisibleForTesting
+    final Map<Activity, Integer> appliedGenerations = new WeakHashMap<Activity, Integer>();
+
+    /**
+     * Activities switched to new overrides in place, see
+     * {@link #registerOverrideListener(Activity, OnOverrideChangedListener)}. Main thread only.
+     */
+    @VisibleForTesting
+    final Map<Activity, OnOverrideChangedListener> overrideListeners =
+            new WeakHashMap<Activity, OnOverrideChangedListener>();
+
+    /**
+     * Lets snapshot changes skip posting a dispatch while nothing is registered.
+     */
+    private volatile boolean hasOverrideListeners;
+
+    private final AtomicBoolean dispatchPosted = new AtomicBoolean();
+
+    /**
+     * Created by the first posted dispatch, guarded by this.
+     */
+    @VisibleForTesting
+    Handler mainHandler;
+
+    private final Runnable dispatchOverrideChanged = new Runnable() {
+        @Override
+        public void run() {
+            dispatchOverrideChanged();
+        }
+    };
+
+    /**
+     * Waiting for an Activity to apply pendingGeneration, main thread only.
+     */
+    private OnSettingsAppliedListener pendingApplied;
+    private int pendingGeneration;
+
+    /**
+     * Spans for cold start and locale switches, see {@link #exportTrace(Context)}. The buffer is
+     * allocated once per process rather than on the cold-start path.
+     */
+    @VisibleForTesting
+    DebugTrace trace = sTrace;
+
+    /**
+     * Records the timings until a sink is set, and is what {@link #exportMetrics(Context)}
+     * writes.
+     */
+    @VisibleForTesting
+    final LockFreeMetrics defaultMetrics = new LockFreeMetrics();
+
+    /**
+     * Where hot-path timings go, {@link #defaultMetrics} unless replaced.
+     */
+    @VisibleForTesting
+    volatile MetricsSink metricsSink = defaultMetrics;
+
+    private static final DebugTrace sTrace =
+            new DebugTrace(TRACE_CAPACITY, DebugTrace.SYSTEM_CLOCK);
+
+    private static FutureTask<DebugSettingsStore> sPreloadTask;
+
+    private static volatile OverrideLocaleLifecycleCallbacks sLifecycleCallbacks;
+
+    private static volatile String sProcessName;
+
     public DebugInjectorImpl(Context context) {
-        this.sharedPrefs = context.getSharedPreferences(PREFS_DEBUG_SETTINGS, Context.MODE_PRIVATE);
+        long start = System.nanoTime();
+        trace.begin(TRACE_INIT);
+
+        FutureTask<DebugSettingsStore> preloadTask = takePreloadTask();
+        DebugSettingsStore preloadedStore = preloadTask != null ? awaitPreload(preloadTask) : null;
+
+        this.settingsStore = preloadedStore != null ? preloadedStore : openSettingsStore(context);
+        this.settingsWriter = new PreferenceWriteBehind(settingsStore);
+        this.settingsStore.registerListener(this);
+
+        if (preloadedStore != null) {
+            updateSnapshot(settingsStore.getString(PREF_DEBUG_LOCALE, ""));
+            reloadSettings();
+        }
+
+        registerLifecycleCallbacks(context);
+
+        // only ever constructed by the first getInstance()
+        firstInstanceNanos = System.nanoTime() - start;
+        reportStartup(metricsSink);
+        trace.end(TRACE_INIT);
+    }
+
+    /**
+     * Starts loading the debug settings file on a background thread so the first
+     * {@link DebugInjector#getInstance(Context)} does not block the main thread on disk I/O.
+     * Called from {@link DebugInjectorInitProvider} before Application.onCreate().
+     */
+    static synchronized void preload(Context context) {
+        if (sPreloadTask != null) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        sPreloadTask = new FutureTask<DebugSettingsStore>(new Callable<DebugSettingsStore>() {
+            @Override
+            public DebugSettingsStore call() throws Exception {
+                DebugSettingsStore settingsStore = openSettingsStore(appContext);
+                // blocks until the backing file has been fully loaded
+                settingsStore.getString(PREF_DEBUG_LOCALE, "");
+                return settingsStore;
+            }
+        });
+
+        Thread thread = new Thread(sPreloadTask, "DebugInjectorPreload");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    /**
+     * Applies the override to every Activity as it resumes, so activities do not have to call
+     * {@link #overrideLocale(Activity)} themselves. Safe to call more than once.
+     */
+    static synchronized void registerLifecycleCallbacks(Context context) {
+        if (sLifecycleCallbacks != null) {
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        if (appContext instanceof Application) {
+            sLifecycleCallbacks = new OverrideLocaleLifecycleCallbacks();
+            ((Application) appContext).registerActivityLifecycleCallbacks(sLifecycleCallbacks);
+        }
+    }
+
+    private static synchronized FutureTask<DebugSettingsStore> takePreloadTask() {
+        FutureTask<DebugSettingsStore> preloadTask = sPreloadTask;
+        sPreloadTask = null;
+        return preloadTask;
+    }
+
+    /**
+     * Returns the preloaded store, or null if the preload failed. In that case the store is
+     * opened again on the calling thread, which surfaces the same failure there.
+     */
+    private DebugSettingsStore awaitPreload(FutureTask<DebugSettingsStore> preloadTask) {
+        boolean mustWait = !preloadTask.isDone();
+        long start = System.nanoTime();
+        try {
+            return preloadTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } finally {
+            preloadWaitNanos = mustWait ? System.nanoTime() - start : 0;
+        }
+    }
+
+    /**
+     * Opens the backend selected by BuildConfig.MAPPED_DEBUG_SETTINGS. Secondary processes go
+     * through {@link DebugSettingsProvider} instead, so they see changes made by the main one.
+     */
+    @VisibleForTesting
+    static DebugSettingsStore openSettingsStore(Context context) {
+        if (isSecondaryProcess(context)) {
+            return ProviderSettingsStore.open(context);
+        }
+        if (BuildConfig.MAPPED_DEBUG_SETTINGS) {
+            File file = new File(context.getFilesDir(), PREFS_DEBUG_SETTINGS + ".log");
+            try {
+                return new MappedFileSettingsStore(file);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to open debug settings " + file, e);
+            }
+        }
+        return new SharedPreferencesSettingsStore(
+                context.getSharedPreferences(PREFS_DEBUG_SETTINGS, Context.MODE_PRIVATE));
+    }
+
+    /**
+     * True in the app's private processes, such as {@code com.example:sync}. Those are the ones
+     * android:process=":name" declares, the main process is named after the package.
+     */
+    @VisibleForTesting
+    static boolean isSecondaryProcess(Context context) {
+        String processName = sProcessName;
+        if (processName == null) {
+            processName = readProcessName();
+            sProcessName = processName;
+        }
+        return processName != null && processName.startsWith(context.getPackageName() + ":");
+    }
+
+    /**
+     * Name of the current process, or null if it cannot be read.
+     */
+    private static String readProcessName() {
+        byte[] buffer = new byte[256];
+        int length = 0;
+        try {
+            FileInputStream in = new FileInputStream("/proc/self/cmdline");
+            try {
+                int read;
+                while (length < buffer.length
+                        && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                    length += read;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        // the arguments are separated by NUL, the first one is the process name
+        int end = 0;
+        while (end < length && buffer[end] != 0) {
+            end++;
+        }
+        try {
+            return new String(buffer, 0, end, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
     }
 
     @Override
@@ -52,51 +430,712 @@ public class DebugInjectorImpl extends DebugInjector {
         activity.startActivity(DebugSettingsActivity.newIntent(activity));
     }
 
+    @Override
+    public Context wrapBaseContext(Context base) {
+        LocaleSnapshot snapshot = currentSnapshot();
+        return new LocalizedContextWrapper(base, snapshot.locale, snapshot.overrides,
+                getLocalizedResources(base.getApplicationContext(), snapshot.locale));
+    }
+
+    @Override
+    public void setMetricsSink(MetricsSink metricsSink) {
+        this.metricsSink = metricsSink;
+        reportStartup(metricsSink);
+    }
+
+    /**
+     * Reports the timings taken while constructing, which happens before anyone can set a sink.
+     */
+    private void reportStartup(MetricsSink metricsSink) {
+        if (preloadWaitNanos >= 0) {
+            metricsSink.onPreloadWait(preloadWaitNanos);
+        }
+        metricsSink.onFirstInstance(firstInstanceNanos);
+    }
+
+    @Override
+    public void setConfigurationOverrides(ConfigurationOverrides overrides) {
+        putSetting(LAYOUT_DIRECTION, String.valueOf(overrides.layoutDirection));
+        putSetting(FONT_SCALE_PERCENT, String.valueOf(Math.round(overrides.fontScale * 100)));
+        putSetting(NIGHT_MODE, String.valueOf(overrides.nightMode));
+        // publish now, the store only sees the values once the writer flushes
+        reloadSettings();
+    }
+
+    private void putSetting(DebugKey key, String value) {
+        settingsWriter.putString(key.name, value, key.storedDefault());
+    }
+
+    @Override
+    public ConfigurationOverrides getConfigurationOverrides() {
+        return currentSnapshot().overrides;
+    }
+
+    @Override
+    public void traceBegin(String name) {
+        trace.begin(name);
+    }
+
+    @Override
+    public void traceEnd(String name) {
+        trace.end(name);
+    }
+
+    @Override
+    public DebugSettings getSettings() {
+        DebugSettings current = settings;
+        if (current == null || current.keyCount != DebugKey.keyCount()) {
+            current = reloadSettings();
+        }
+        return current;
+    }
+
+    @Override
+    public void registerOverrideListener(Activity activity, OnOverrideChangedListener listener) {
+        overrideListeners.put(activity, listener);
+        hasOverrideListeners = true;
+    }
+
+    @Override
+    public void unregisterOverrideListener(Activity activity) {
+        overrideListeners.remove(activity);
+        hasOverrideListeners = !overrideListeners.isEmpty();
+    }
+
     @Override
     public boolean overrideLocale(Activity activity) {
+        long start = System.nanoTime();
+        trace.begin(TRACE_OVERRIDE_LOCALE);
+        boolean override = applyLocaleOverride(activity);
+        trace.end(TRACE_OVERRIDE_LOCALE);
+        metricsSink.onOverrideLocale(System.nanoTime() - start, override);
+        return override;
+    }
+
+    private boolean applyLocaleOverride(Activity activity) {
+        LocaleSnapshot snapshot = currentSnapshot();
+
+        // already caught up with the current override, nothing to check
+        Integer appliedGeneration = appliedGenerations.get(activity);
+        if (appliedGeneration != null && appliedGeneration == snapshot.generation) {
+            return false;
+        }
+        recordApplied(activity, snapshot);
 
         boolean override = false;
 
-        if (originalDefaultLocale == null) {
-            originalDefaultLocale = Locale.getDefault();
+        Context baseContext = activity.getBaseContext();
+        if (baseContext instanceof LocalizedContextWrapper) {
+            // attached through wrapBaseContext, the Activity owns its configuration
+            LocalizedContextWrapper wrapper = (LocalizedContextWrapper) baseContext;
+            if (wrapper.locale != snapshot.locale || wrapper.overrides != snapshot.overrides) {
+                activity.recreate();
+                override = true;
+            }
+            return override;
         }
 
         Locale currentLocale = Locale.getDefault();
+        Locale locale = snapshot.locale;
+        boolean localeChanged = currentLocale != locale && !currentLocale.equals(locale);
 
-        String localeCode = sharedPrefs.getString(PREF_DEBUG_LOCALE, "");
+        // once overrides were used the fields are diffed on every change, so a reset restores them
+        boolean overridesInUse = !snapshot.overrides.isEmpty() || !Float.isNaN(originalFontScale);
 
-        boolean isPhoneDefault = localeCode.isEmpty();
-        Locale locale = isPhoneDefault ? originalDefaultLocale : new Locale(localeCode);
-
-        if (!currentLocale.equals(locale)) {
-            setLocale(locale, activity);
-            override = true;
+        if (localeChanged || overridesInUse) {
+            long start = System.nanoTime();
+            trace.begin(TRACE_APPLY_CONFIGURATION);
+            override = applyConfiguration(activity, snapshot);
+            trace.end(TRACE_APPLY_CONFIGURATION);
+            metricsSink.onConfigurationUpdate(System.nanoTime() - start);
         }
 
         return override;
     }
 
+    private void recordApplied(Activity activity, LocaleSnapshot snapshot) {
+        appliedGenerations.put(activity, snapshot.generation);
+        if (pendingApplied != null && snapshot.generation - pendingGeneration >= 0) {
+            notifySettingsApplied(snapshot, true);
+        }
+    }
+
+    /**
+     * Posts {@link #dispatchOverrideChanged()} for a newly published snapshot, at most once until
+     * it has run. Called while holding this.
+     */
+    private void onSnapshotPublished() {
+        if (hasOverrideListeners && dispatchPosted.compareAndSet(false, true)) {
+            if (mainHandler == null) {
+                mainHandler = new Handler(Looper.getMainLooper());
+            }
+            mainHandler.post(dispatchOverrideChanged);
+        }
+    }
+
+    /**
+     * Switches every registered Activity that already applied an earlier snapshot to the current
+     * one in place, and lets its listener rebind. Activities that cannot take the change in place
+     * keep their generation and catch up on their next resume.
+     */
+    @VisibleForTesting
+    @MainThread
+    void dispatchOverrideChanged() {
+        dispatchPosted.set(false);
+        LocaleSnapshot snapshot = currentSnapshot();
+
+        // listeners may unregister while rebinding
+        List<Map.Entry<Activity, OnOverrideChangedListener>> entries =
+                new ArrayList<Map.Entry<Activity, OnOverrideChangedListener>>(
+                        overrideListeners.entrySet());
+        for (Map.Entry<Activity, OnOverrideChangedListener> entry : entries) {
+            Activity activity = entry.getKey();
+            Integer appliedGeneration = activity != null ? appliedGenerations.get(activity) : null;
+            if (appliedGeneration == null || appliedGeneration == snapshot.generation) {
+                // not resumed yet, or already current
+                continue;
+            }
+
+            trace.begin(TRACE_REBIND);
+            boolean rebound = rebindInPlace(activity, snapshot);
+            if (rebound) {
+                recordApplied(activity, snapshot);
+                entry.getValue().onOverrideChanged(snapshot.locale, snapshot.overrides);
+            }
+            trace.end(TRACE_REBIND);
+        }
+    }
+
+    /**
+     * Updates the Activity's resources to the snapshot, unless that changes more than
+     * {@link #IN_PLACE_CHANGES}.
+     */
+    @VisibleForTesting
+    boolean rebindInPlace(Activity activity, LocaleSnapshot snapshot) {
+        Resources resources = activity.getResources();
+        Configuration current = resources.getConfiguration();
+        captureOriginals(current, snapshot.overrides);
+
+        Configuration desired = new Configuration(current);
+        buildConfiguration(desired, snapshot.locale, snapshot.overrides);
+        int changes = diff(current, desired);
+        if ((changes & ~IN_PLACE_CHANGES) != 0) {
+            return false;
+        }
+
+        Context baseContext = activity.getBaseContext();
+        if (baseContext instanceof LocalizedContextWrapper) {
+            // the cached Resources of the old locale are about to change, stop handing them out
+            evictLocalizedResources(resources);
+            ((LocalizedContextWrapper) baseContext).rebind(snapshot.locale, snapshot.overrides);
+        } else if (!Locale.getDefault().equals(snapshot.locale)) {
+            Locale.setDefault(snapshot.locale);
+        }
+
+        if (changes != 0) {
+            trace.begin(TRACE_UPDATE_CONFIGURATION);
+            resources.updateConfiguration(desired, null);
+            trace.end(TRACE_UPDATE_CONFIGURATION);
+        }
+        return true;
+    }
+
+    private void evictLocalizedResources(Resources resources) {
+        synchronized (localizedResources) {
+            localizedResources.values().remove(resources);
+        }
+    }
+
+    /**
+     * Applies a batch of settings without going through the settings screen. Keys are
+     * {@link #PREF_DEBUG_LOCALE} or registered {@link DebugKey} names, values are in their
+     * stored form and null resets a key. The new snapshot is published and persisted before
+     * this returns. A resumed Activity is switched in place when it registered an
+     * {@link OnOverrideChangedListener} and recreated otherwise. The listener hears back once it
+     * has applied the snapshot.
+     *
+     * @return the published snapshot
+     * @throws IllegalArgumentException for unknown keys, nothing is applied then
+     */
+    @MainThread
+    LocaleSnapshot applySettings(Map<String, String> values, Activity resumedActivity,
+                                 OnSettingsAppliedListener listener) {
+        for (String key : values.keySet()) {
+            if (!PREF_DEBUG_LOCALE.equals(key) && !DebugKey.isRegistered(key)) {
+                throw new IllegalArgumentException("Unknown debug setting " + key);
+            }
+        }
+
+        trace.begin(TRACE_APPLY_SETTINGS);
+        int previousGeneration = currentSnapshot().generation;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = entry.getKey();
+            settingsWriter.putString(key, entry.getValue(), PREF_DEBUG_LOCALE.equals(key)
+                    ? "" : DebugKey.forName(key).storedDefault());
+        }
+        reloadSettings();
+        String localeCode = values.get(PREF_DEBUG_LOCALE);
+        if (localeCode != null) {
+            updateSnapshot(localeCode);
+        }
+        // one write, which also tells the other processes
+        settingsWriter.flush();
+        LocaleSnapshot snapshot = currentSnapshot();
+        trace.end(TRACE_APPLY_SETTINGS);
+
+        // superseded, its settings are published even if nothing resumed with them
+        if (pendingApplied != null) {
+            notifySettingsApplied(snapshot, false);
+        }
+
+        if (resumedActivity == null || snapshot.generation == previousGeneration) {
+            // nothing on screen has to catch up
+            listener.onSettingsApplied(snapshot, true);
+            return snapshot;
+        }
+
+        pendingApplied = listener;
+        pendingGeneration = snapshot.generation;
+        if (overrideListeners.containsKey(resumedActivity)) {
+            dispatchOverrideChanged();
+        }
+        if (pendingApplied == listener) {
+            resumedActivity.recreate();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Stops waiting for the listener, returns false if it was already told.
+     */
+    @MainThread
+    boolean cancelSettingsApplied(OnSettingsAppliedListener listener) {
+        if (pendingApplied != listener) {
+            return false;
+        }
+        pendingApplied = null;
+        return true;
+    }
+
+    private void notifySettingsApplied(LocaleSnapshot snapshot, boolean applied) {
+        OnSettingsAppliedListener listener = pendingApplied;
+        pendingApplied = null;
+        listener.onSettingsApplied(snapshot, applied);
+    }
+
+    /**
+     * Drops the generation recorded for a destroyed Activity.
+     */
+    void onActivityDestroyed(Activity activity) {
+        appliedGenerations.remove(activity);
+        if (overrideListeners.remove(activity) != null) {
+            hasOverrideListeners = !overrideListeners.isEmpty();
+        }
+    }
+
+    /**
+     * Builds the complete desired Configuration, diffs it against the current one and applies
+     * it with at most one updateConfiguration() call, none if nothing differs.
+     */
     @VisibleForTesting
-    void setLocale(Locale locale, Activity activity) {
+    boolean applyConfiguration(Activity activity, LocaleSnapshot snapshot) {
         Resources resources = activity.getResources();
-        Configuration config = resources.getConfiguration();
+        Configuration current = resources.getConfiguration();
+        captureOriginals(current, snapshot.overrides);
+
+        Configuration desired = new Configuration(current);
+        buildConfiguration(desired, snapshot.locale, snapshot.overrides);
+
+        boolean defaultChanged = !Locale.getDefault().equals(snapshot.locale);
+        if (defaultChanged) {
+            Locale.setDefault(snapshot.locale);
+        }
+
+        if (diff(current, desired) == 0) {
+            return defaultChanged;
+        }
+
+        trace.begin(TRACE_UPDATE_CONFIGURATION);
+        resources.updateConfiguration(desired, null);
+        trace.end(TRACE_UPDATE_CONFIGURATION);
+        return true;
+    }
+
+    private synchronized void captureOriginals(Configuration current,
+                                               ConfigurationOverrides overrides) {
+        if (Float.isNaN(originalFontScale) && !overrides.isEmpty()) {
+            originalFontScale = current.fontScale;
+            originalNightMode = current.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        }
+    }
+
+    /**
+     * Writes the locale and every override into config. Fields without an override get back
+     * the system value captured before the first override.
+     */
+    @VisibleForTesting
+    void buildConfiguration(Configuration config, Locale locale,
+                            ConfigurationOverrides overrides) {
+        writeOverrides(config, locale, overrides);
+
+        if (!Float.isNaN(originalFontScale)) {
+            if (overrides.fontScale == ConfigurationOverrides.FONT_SCALE_SYSTEM) {
+                config.fontScale = originalFontScale;
+            }
+            if (overrides.nightMode == ConfigurationOverrides.NIGHT_MODE_SYSTEM) {
+                config.uiMode = (config.uiMode & ~Configuration.UI_MODE_NIGHT_MASK)
+                        | originalNightMode;
+            }
+        }
+    }
+
+    /**
+     * Writes the locale and the fields that have an override into config, leaving the rest.
+     */
+    private void writeOverrides(Configuration config, Locale locale,
+                                ConfigurationOverrides overrides) {
+        setConfigurationLocale(config, locale);
+
+        if (overrides.layoutDirection != ConfigurationOverrides.LAYOUT_DIRECTION_LOCALE) {
+            int layoutDir = overrides.layoutDirection == ConfigurationOverrides.LAYOUT_DIRECTION_RTL
+                    ? Configuration.SCREENLAYOUT_LAYOUTDIR_RTL
+                    : Configuration.SCREENLAYOUT_LAYOUTDIR_LTR;
+            config.screenLayout = (config.screenLayout & ~Configuration.SCREENLAYOUT_LAYOUTDIR_MASK)
+                    | layoutDir;
+        }
+
+        if (overrides.fontScale != ConfigurationOverrides.FONT_SCALE_SYSTEM) {
+            config.fontScale = overrides.fontScale;
+        }
+
+        if (overrides.nightMode != ConfigurationOverrides.NIGHT_MODE_SYSTEM) {
+            config.uiMode = (config.uiMode & ~Configuration.UI_MODE_NIGHT_MASK) | overrides.nightMode;
+        }
+    }
+
+    /**
+     * Sets the locale and the layout direction it implies. Unit tests stand in for the
+     * framework's implementation here.
+     */
+    @VisibleForTesting
+    void setConfigurationLocale(Configuration config, Locale locale) {
         config.setLocale(locale);
+    }
+
+    /**
+     * Field by field comparison of everything an override can change, as CHANGE_* bits.
+     */
+    @VisibleForTesting
+    static int diff(Configuration current, Configuration desired) {
+        int changes = 0;
+        if (current.locale == null ? desired.locale != null : !current.locale.equals(desired.locale)) {
+            changes |= CHANGE_LOCALE;
+        }
+        if ((current.screenLayout & Configuration.SCREENLAYOUT_LAYOUTDIR_MASK)
+                != (desired.screenLayout & Configuration.SCREENLAYOUT_LAYOUTDIR_MASK)) {
+            changes |= CHANGE_LAYOUT_DIRECTION;
+        }
+        if (Float.compare(current.fontScale, desired.fontScale) != 0) {
+            changes |= CHANGE_FONT_SCALE;
+        }
+        if ((current.uiMode & Configuration.UI_MODE_NIGHT_MASK)
+                != (desired.uiMode & Configuration.UI_MODE_NIGHT_MASK)) {
+            changes |= CHANGE_NIGHT_MODE;
+        }
+        return changes;
+    }
 
-        Locale.setDefault(locale);
-        activity.getResources().updateConfiguration(config, null);
+    @VisibleForTesting
+    Resources getLocalizedResources(Context appContext, Locale locale) {
+        ConfigurationOverrides overrides = configurationOverrides;
+        synchronized (localizedResources) {
+            if (localizedResourcesOverrides != overrides) {
+                // built with the previous overrides
+                localizedResources.clear();
+                localizedResourcesOverrides = overrides;
+            }
+
+            Resources resources = localizedResources.get(locale);
+            if (resources == null) {
+                resources = createLocalizedResources(appContext, locale);
+                localizedResources.put(locale, resources);
+            }
+            return resources;
+        }
+    }
+
+    /**
+     * Resources for the locale and the current overrides. Only those fields are defined in the
+     * override configuration, so the framework keeps the rest in step with the application's
+     * configuration across rotation, night mode and other changes while the Resources are cached.
+     */
+    @VisibleForTesting
+    Resources createLocalizedResources(Context appContext, Locale locale) {
+        Configuration config = new Configuration();
+        // undefined, a defined font scale replaces the system's
+        config.fontScale = 0;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            // a defined layout direction replaced all of screenLayout before N
+            config.screenLayout = appContext.getResources().getConfiguration().screenLayout
+                    & ~Configuration.SCREENLAYOUT_LAYOUTDIR_MASK;
+        }
+        writeOverrides(config, locale, configurationOverrides);
+        return appContext.createConfigurationContext(config).getResources();
+    }
+
+    /**
+     * Resolves through the interned table, which also holds the catalog Locales, so equal tags
+     * always give the same instance.
+     */
+    private static Locale toLocale(String localeCode) {
+        return LocaleTable.forTag(localeCode);
+    }
+
+    @Override
+    public void onSettingChanged(DebugSettingsStore store, String key) {
+        if (PREF_DEBUG_LOCALE.equals(key)) {
+            // a late notification must not undo a newer value that is still queued
+            updateSnapshot(settingsWriter.getString(PREF_DEBUG_LOCALE, ""));
+        } else if (DebugKey.isRegistered(key)) {
+            reloadSettings();
+        }
+    }
+
+    /**
+     * Reads every registered key in one pass and publishes them as a new immutable snapshot.
+     */
+    @VisibleForTesting
+    synchronized DebugSettings reloadSettings() {
+        // read the count first, keys registered meanwhile only trigger another reload
+        int keyCount = DebugKey.keyCount();
+
+        DebugKey.IntKey[] intKeys = DebugKey.intKeys();
+        int[] ints = new int[intKeys.length];
+        for (int i = 0; i < intKeys.length; i++) {
+            ints[i] = parseInt(settingsWriter.getString(intKeys[i].name, null),
+                    intKeys[i].defaultValue);
+        }
+
+        DebugKey.LongKey[] longKeys = DebugKey.longKeys();
+        long[] longs = new long[longKeys.length];
+        for (int i = 0; i < longKeys.length; i++) {
+            longs[i] = parseLong(settingsWriter.getString(longKeys[i].name, null),
+                    longKeys[i].defaultValue);
+        }
+
+        DebugKey.BooleanKey[] booleanKeys = DebugKey.booleanKeys();
+        boolean[] booleans = new boolean[booleanKeys.length];
+        for (int i = 0; i < booleanKeys.length; i++) {
+            booleans[i] = parseBoolean(settingsWriter.getString(booleanKeys[i].name, null),
+                    booleanKeys[i].defaultValue);
+        }
+
+        DebugSettings current = new DebugSettings(keyCount, ints, longs, booleans);
+        settings = current;
+        updateOverrides(new ConfigurationOverrides(current.get(LAYOUT_DIRECTION),
+                current.get(FONT_SCALE_PERCENT) / 100f, current.get(NIGHT_MODE)));
+        return current;
+    }
+
+    /**
+     * Publishes a new snapshot when the overrides differ from the current ones.
+     */
+    private synchronized void updateOverrides(ConfigurationOverrides overrides) {
+        if (overrides.equals(configurationOverrides)) {
+            return;
+        }
+        configurationOverrides = overrides;
+
+        LocaleSnapshot snapshot = localeSnapshot;
+        if (snapshot != null) {
+            localeSnapshot = new LocaleSnapshot(snapshot.localeCode, snapshot.locale, overrides,
+                    snapshot.generation + 1);
+            onSnapshotPublished();
+        }
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return value != null ? Long.parseLong(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static boolean parseBoolean(String value, boolean defaultValue) {
+        if ("true".equals(value)) {
+            return true;
+        } else if ("false".equals(value)) {
+            return false;
+        }
+        return defaultValue;
     }
 
+    private LocaleSnapshot currentSnapshot() {
+        LocaleSnapshot snapshot = localeSnapshot;
+        if (snapshot == null) {
+            trace.begin(TRACE_LOAD_OVERRIDE);
+            if (settings == null) {
+                // loads the configuration overrides along with every other setting
+                reloadSettings();
+            }
+            snapshot = updateSnapshot(settingsStore.getString(PREF_DEBUG_LOCALE, ""));
+            trace.end(TRACE_LOAD_OVERRIDE);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Swaps in a new snapshot for the given locale code, keeping the current one when the code
+     * is unchanged so the resolved Locale reference stays stable.
+     */
+    @VisibleForTesting
+    synchronized LocaleSnapshot updateSnapshot(String localeCode) {
+        if (originalDefaultLocale == null) {
+            originalDefaultLocale = Locale.getDefault();
+        }
+
+        LocaleSnapshot snapshot = localeSnapshot;
+        if (snapshot == null || !snapshot.localeCode.equals(localeCode)) {
+            boolean isPhoneDefault = localeCode.isEmpty();
+            Locale locale = isPhoneDefault ? originalDefaultLocale : toLocale(localeCode);
+            if (snapshot != null) {
+                DateFormatCache.invalidate();
+            }
+            int generation = snapshot != null ? snapshot.generation + 1 : 0;
+            snapshot = new LocaleSnapshot(localeCode, locale, configurationOverrides, generation);
+            localeSnapshot = snapshot;
+            if (generation > 0) {
+                onSnapshotPublished();
+            }
+        }
+        return snapshot;
+    }
 
     static void setOverrideLocale(Context context, String localeCode) {
-        SharedPreferences sharedPrefs = context.getSharedPreferences(PREFS_DEBUG_SETTINGS, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = sharedPrefs.edit();
-        editor.putString(PREF_DEBUG_LOCALE, localeCode);
-        editor.apply();
+        DebugInjectorImpl debugInjector = (DebugInjectorImpl) getInstance(context);
+        debugInjector.updateSnapshot(localeCode);
+        debugInjector.settingsWriter.putString(PREF_DEBUG_LOCALE, localeCode, "");
+    }
+
+    /**
+     * See {@link #applySettings(Map, Activity, OnSettingsAppliedListener)}, for the Activity
+     * currently resumed in this process.
+     */
+    @MainThread
+    static LocaleSnapshot applySettings(Context context, Map<String, String> values,
+                                        OnSettingsAppliedListener listener) {
+        OverrideLocaleLifecycleCallbacks callbacks = sLifecycleCallbacks;
+        return ((DebugInjectorImpl) getInstance(context)).applySettings(values,
+                callbacks != null ? callbacks.getResumedActivity() : null, listener);
+    }
+
+    @MainThread
+    static boolean cancelSettingsApplied(Context context, OnSettingsAppliedListener listener) {
+        return ((DebugInjectorImpl) getInstance(context)).cancelSettingsApplied(listener);
+    }
+
+    static void setSetting(Context context, DebugKey.IntKey key, int value) {
+        putSetting(context, key, String.valueOf(value));
+    }
+
+    static void setSetting(Context context, DebugKey.LongKey key, long value) {
+        putSetting(context, key, String.valueOf(value));
+    }
+
+    static void setSetting(Context context, DebugKey.BooleanKey key, boolean value) {
+        putSetting(context, key, String.valueOf(value));
+    }
+
+    private static void putSetting(Context context, DebugKey key, String value) {
+        DebugInjectorImpl debugInjector = (DebugInjectorImpl) getInstance(context);
+        debugInjector.putSetting(key, value);
+        // publish now, the store only sees the value once the writer flushes
+        debugInjector.reloadSettings();
     }
 
     static String getOverrideLocale(Context context) {
-        SharedPreferences sharedPrefs = context.getSharedPreferences(PREFS_DEBUG_SETTINGS, Context.MODE_PRIVATE);
-        return sharedPrefs.getString(PREF_DEBUG_LOCALE, "");
+        // the snapshot already includes writes that have not been flushed yet
+        return ((DebugInjectorImpl) getInstance(context)).currentSnapshot().localeCode;
+    }
+
+    /**
+     * The store this process reads its settings from, served to the other processes by
+     * {@link DebugSettingsProvider}.
+     */
+    static DebugSettingsStore getSettingsStore(Context context) {
+        return ((DebugInjectorImpl) getInstance(context)).settingsStore;
+    }
+
+    /**
+     * Persists pending setting changes right away, called when the settings screen pauses.
+     */
+    static void flushSettings(Context context) {
+        ((DebugInjectorImpl) getInstance(context)).settingsWriter.flush();
+    }
+
+    /**
+     * Writes the recorded spans as Chrome trace-event JSON to a new file in the app's files
+     * directory, named after the current time so runs can be compared.
+     */
+    @WorkerThread
+    static File exportTrace(Context context) throws IOException {
+        DebugInjectorImpl debugInjector = (DebugInjectorImpl) getInstance(context);
+        File file = new File(context.getFilesDir(),
+                "debug_trace_" + System.currentTimeMillis() + ".json");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            debugInjector.trace.writeJson(out, Process.myPid());
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes what {@link LockFreeMetrics} recorded as JSON to a new file in the app's files
+     * directory, named like the trace. Timings only go there while no other sink is set.
+     */
+    @WorkerThread
+    static File exportMetrics(Context context) throws IOException {
+        DebugInjectorImpl debugInjector = (DebugInjectorImpl) getInstance(context);
+        File file = new File(context.getFilesDir(),
+                "debug_metrics_" + System.currentTimeMillis() + ".json");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            debugInjector.defaultMetrics.writeJson(out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Immutable pairing of the stored locale code, the Locale it resolves to and the other
+     * configuration overrides. The generation goes up by one every time any of them changes.
+     */
+    @VisibleForTesting
+    static final class LocaleSnapshot {
+        final String localeCode;
+        final Locale locale;
+        final ConfigurationOverrides overrides;
+        final int generation;
+
+        LocaleSnapshot(String localeCode, Locale locale, ConfigurationOverrides overrides,
+                       int generation) {
+            this.localeCode = localeCode;
+            this.locale = locale;
+            this.overrides = overrides;
+            this.generation = generation;
+        }
     }
 
 }
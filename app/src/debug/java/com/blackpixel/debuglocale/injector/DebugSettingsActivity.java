@@ -28,58 +28,190 @@ import android.os.Bundle;
 import android.support.v4.app.NavUtils;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.Spinner;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import com.blackpixel.debuglocale.R;
 
-import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 public class DebugSettingsActivity extends AppCompatActivity {
 
+    private LocalePickerAdapter adapter;
+    private ListView localeList;
+    private TextView coverageText;
+
     public static Intent newIntent(Context context) {
         return new Intent(context, DebugSettingsActivity.class);
     }
 
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        // like MainActivity, so resuming this screen never changes the process default locale
+        super.attachBaseContext(DebugInjector.getInstance(newBase).wrapBaseContext(newBase));
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_debug_setting);
         setupActionBar();
 
-        final Spinner spinner = (Spinner) findViewById(R.id.debug_settings_locale_override);
-        ArrayAdapter<CharSequence> adapter = ArrayAdapter.createFromResource(this,
-                R.array.locale_labels, android.R.layout.simple_spinner_item);
-        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        spinner.setAdapter(adapter);
+        LocalePickerIndex index = LocalePickerIndex.getAvailable();
+        adapter = new LocalePickerAdapter(this,
+                index != null ? index : LocalePickerIndex.catalogOnly(),
+                TranslationCoverage.get());
+        coverageText = (TextView) findViewById(R.id.debug_settings_coverage);
+
+        localeList = (ListView) findViewById(R.id.debug_settings_locale_list);
+        localeList.setAdapter(adapter);
+        localeList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> adapterView, View view, int pos, long id) {
+                DebugInjectorImpl.setOverrideLocale(DebugSettingsActivity.this,
+                        adapter.getItem(pos));
+                updateCoverage(adapter.getItem(pos));
+            }
+        });
+        updateCheckedLocale();
+
+        EditText search = (EditText) findViewById(R.id.debug_settings_locale_search);
+        search.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
 
-        String defaultLocale = DebugInjectorImpl.getOverrideLocale(this);
-        final List<String> localeValues = Arrays.asList(getResources()
-                .getStringArray(R.array.locale_values));
+            @Override
+            public void afterTextChanged(Editable s) {
+                adapter.setQuery(s.toString());
+                updateCheckedLocale();
+            }
+        });
 
-        int initialPos = localeValues.indexOf(defaultLocale);
-        if (initialPos != -1) {
-            spinner.setSelection(initialPos);
+        if (index == null) {
+            loadDisplayNames();
         }
 
-        spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+        findViewById(R.id.debug_settings_export_trace).setOnClickListener(new View.OnClickListener() {
             @Override
-            public void onItemSelected(AdapterView<?> adapterView, View view, int pos, long id) {
-                DebugInjectorImpl.setOverrideLocale(DebugSettingsActivity.this,
-                        localeValues.get(pos));
+            public void onClick(View view) {
+                exportTrace();
             }
+        });
+    }
+
+    /**
+     * Lists every available locale by tag, then formats their display names, both off the main
+     * thread, and swaps each index in when it is ready. The full index is cached, so this only
+     * runs once per process.
+     */
+    private void loadDisplayNames() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                showIndex(LocalePickerIndex.withoutDisplayNames());
+                showIndex(LocalePickerIndex.loadAvailable());
+            }
+        }, "LocalePickerIndex");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
 
+    private void showIndex(final LocalePickerIndex index) {
+        runOnUiThread(new Runnable() {
             @Override
-            public void onNothingSelected(AdapterView<?> adapterView) {
-                DebugInjectorImpl.setOverrideLocale(DebugSettingsActivity.this, "");
+            public void run() {
+                adapter.setIndex(index);
+                updateCheckedLocale();
             }
         });
     }
 
+    private void updateCheckedLocale() {
+        String code = DebugInjectorImpl.getOverrideLocale(this);
+        int position = adapter.positionOf(code);
+        if (position != -1) {
+            localeList.setItemChecked(position, true);
+        } else {
+            localeList.clearChoices();
+        }
+        updateCoverage(code);
+    }
+
+    /**
+     * Summarizes which strings the override falls back on, read from the generated index.
+     */
+    private void updateCoverage(String code) {
+        if (code == null || code.isEmpty()) {
+            coverageText.setVisibility(View.GONE);
+            return;
+        }
+        TranslationCoverage coverage = TranslationCoverage.get();
+        int locale = coverage.find(code);
+        String summary = getString(R.string.debug_settings_coverage, code,
+                coverage.keyCount() - coverage.missingCount(locale), coverage.keyCount());
+        List<String> missing = coverage.missingKeys(locale);
+        if (!missing.isEmpty()) {
+            summary += '\n' + getString(R.string.debug_settings_coverage_missing,
+                    TextUtils.join(", ", missing));
+        }
+        coverageText.setText(summary);
+        coverageText.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Writes the trace and metrics files off the main thread, serializing a full trace buffer
+     * takes long enough to drop frames. The result is reported even if the screen was left.
+     */
+    private void exportTrace() {
+        final Context context = getApplicationContext();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                try {
+                    File traceFile = DebugInjectorImpl.exportTrace(context);
+                    File metricsFile = DebugInjectorImpl.exportMetrics(context);
+                    message = context.getString(R.string.debug_settings_export_trace_done,
+                            traceFile.getAbsolutePath(), metricsFile.getAbsolutePath());
+                } catch (IOException e) {
+                    message = context.getString(R.string.debug_settings_export_trace_failed,
+                            e.getMessage());
+                }
+
+                final String result = message;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(context, result, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "DebugTraceExport");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        DebugInjectorImpl.flushSettings(this);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
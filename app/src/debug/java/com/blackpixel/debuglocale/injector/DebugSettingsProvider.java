@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serves the debug settings of the app's main process to its other processes, see
+ * {@link ProviderSettingsStore}. Every change to the backing store is announced as a change
+ * to {@code content://<authority>/<key>}.
+ *
+ * Declared without android:process in the debug AndroidManifest.xml, so it always runs in the
+ * main process, which owns the settings file.
+ */
+public class DebugSettingsProvider extends ContentProvider
+        implements DebugSettingsStore.OnSettingChangedListener {
+
+    static final String AUTHORITY_SUFFIX = ".debuginjector.settings";
+
+    static final String METHOD_GET = "get";
+    static final String METHOD_PUT = "put";
+
+    static final String KEY_VALUE = "value";
+
+    private DebugSettingsStore settingsStore;
+
+    private Uri contentUri;
+
+    static Uri contentUri(Context context) {
+        return Uri.parse("content://" + context.getPackageName() + AUTHORITY_SUFFIX);
+    }
+
+    static Uri keyUri(Uri contentUri, String key) {
+        return Uri.withAppendedPath(contentUri, Uri.encode(key));
+    }
+
+    @Override
+    public boolean onCreate() {
+        // the store is opened by the first call, another process asking is what needs it
+        return true;
+    }
+
+    private synchronized DebugSettingsStore settingsStore() {
+        if (settingsStore == null) {
+            contentUri = contentUri(getContext());
+            settingsStore = DebugInjectorImpl.getSettingsStore(getContext());
+            settingsStore.registerListener(this);
+        }
+        return settingsStore;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (METHOD_GET.equals(method)) {
+            Bundle result = new Bundle();
+            result.putString(KEY_VALUE, settingsStore().getString(arg, null));
+            return result;
+        } else if (METHOD_PUT.equals(method)) {
+            Map<String, String> values = new HashMap<String, String>();
+            for (String key : extras.keySet()) {
+                values.put(key, extras.getString(key));
+            }
+            settingsStore().putStrings(values);
+            return null;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    @Override
+    public void onSettingChanged(DebugSettingsStore store, String key) {
+        getContext().getContentResolver().notifyChange(keyUri(contentUri, key), null);
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale.injector;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies debug settings without the settings screen, so UI automation can switch locales
+ * between runs in milliseconds:
+ *
+ * <pre>
+ * adb shell am broadcast -a com.blackpixel.debuglocale.action.APPLY_DEBUG_SETTINGS \
+ *     -n com.blackpixel.debuglocale.debug/com.blackpixel.debuglocale.injector.DebugSettingsReceiver \
+ *     --es locale fr --ei pref_debug_layout_direction 1
+ * </pre>
+ *
+ * Every extra is one setting: {@code locale} or {@link DebugInjectorImpl#PREF_DEBUG_LOCALE} for
+ * the override, otherwise the name of a registered {@link DebugKey}. The whole batch is applied
+ * at once, and the broadcast completes after the resumed Activity was recreated with it. The
+ * result code is {@link #RESULT_APPLIED}, {@link #RESULT_PUBLISHED} or {@link #RESULT_REJECTED}
+ * and the result data describes the snapshot or the error.
+ *
+ * Instrumentation tests in the same process can call
+ * {@link #applySettingsAndWait(Context, Map, long)} instead.
+ *
+ * Declared in the debug AndroidManifest.xml behind the DUMP permission, which the shell has and
+ * other apps do not.
+ */
+public class DebugSettingsReceiver extends BroadcastReceiver {
+
+    public static final String ACTION_APPLY_DEBUG_SETTINGS =
+            "com.blackpixel.debuglocale.action.APPLY_DEBUG_SETTINGS";
+
+    public static final String EXTRA_LOCALE = "locale";
+
+    public static final int RESULT_APPLIED = Activity.RESULT_OK;
+
+    /**
+     * The settings are active, but the resumed Activity did not come back with them in time.
+     */
+    public static final int RESULT_PUBLISHED = 1;
+
+    public static final int RESULT_REJECTED = Activity.RESULT_CANCELED;
+
+    /**
+     * Well below the time the system gives a receiver before reporting it as not responding.
+     */
+    static final long APPLY_TIMEOUT_MILLIS = 5000;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_APPLY_DEBUG_SETTINGS.equals(intent.getAction())) {
+            return;
+        }
+
+        Map<String, String> values = toSettings(intent.getExtras());
+        PendingReport report = new PendingReport(context, goAsync());
+        try {
+            report.startTimeout(DebugInjectorImpl.applySettings(context, values, report));
+        } catch (IllegalArgumentException e) {
+            report.reject(e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the settings on the main thread and blocks until they are active, for
+     * instrumentation tests. Must not be called from the main thread.
+     *
+     * @return false if the resumed Activity did not come back with them before the timeout
+     * @throws IllegalArgumentException for unknown keys, nothing is applied then
+     */
+    public static boolean applySettingsAndWait(final Context context,
+                                               final Map<String, String> values,
+                                               long timeoutMillis) throws InterruptedException {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("Would wait for the main thread on itself");
+        }
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final boolean[] applied = new boolean[1];
+        final RuntimeException[] failure = new RuntimeException[1];
+        final DebugInjectorImpl.OnSettingsAppliedListener listener =
+                new DebugInjectorImpl.OnSettingsAppliedListener() {
+                    @Override
+                    public void onSettingsApplied(DebugInjectorImpl.LocaleSnapshot snapshot,
+                                                  boolean settingsApplied) {
+                        applied[0] = settingsApplied;
+                        done.countDown();
+                    }
+                };
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    DebugInjectorImpl.applySettings(context, values, listener);
+                } catch (RuntimeException e) {
+                    failure[0] = e;
+                    done.countDown();
+                }
+            }
+        });
+
+        if (!done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    DebugInjectorImpl.cancelSettingsApplied(context, listener);
+                }
+            });
+            return false;
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return applied[0];
+    }
+
+    /**
+     * Maps the intent extras to setting names and stored values.
+     */
+    static Map<String, String> toSettings(Bundle extras) {
+        if (extras == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> values = new HashMap<String, String>();
+        for (String key : extras.keySet()) {
+            String name = EXTRA_LOCALE.equals(key) ? DebugInjectorImpl.PREF_DEBUG_LOCALE : key;
+            Object value = extras.get(key);
+            values.put(name, value != null ? String.valueOf(value) : null);
+        }
+        return values;
+    }
+
+    /**
+     * Completes the broadcast once the settings are active or the timeout passes, whichever
+     * happens first. Only used from the main thread.
+     */
+    private static class PendingReport
+            implements DebugInjectorImpl.OnSettingsAppliedListener, Runnable {
+
+        private final Context context;
+        private final PendingResult result;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private DebugInjectorImpl.LocaleSnapshot snapshot;
+        private boolean finished;
+
+        PendingReport(Context context, PendingResult result) {
+            this.context = context;
+            this.result = result;
+        }
+
+        void startTimeout(DebugInjectorImpl.LocaleSnapshot snapshot) {
+            this.snapshot = snapshot;
+            if (!finished) {
+                handler.postDelayed(this, APPLY_TIMEOUT_MILLIS);
+            }
+        }
+
+        @Override
+        public void onSettingsApplied(DebugInjectorImpl.LocaleSnapshot snapshot, boolean applied) {
+            finish(applied ? RESULT_APPLIED : RESULT_PUBLISHED, describe(snapshot));
+        }
+
+        /**
+         * Timed out waiting for the resumed Activity.
+         */
+        @Override
+        public void run() {
+            if (DebugInjectorImpl.cancelSettingsApplied(context, this)) {
+                finish(RESULT_PUBLISHED, describe(snapshot));
+            }
+        }
+
+        void reject(String message) {
+            finish(RESULT_REJECTED, message);
+        }
+
+        private void finish(int code, String data) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            handler.removeCallbacks(this);
+            result.setResultCode(code);
+            result.setResultData(data);
+            result.finish();
+        }
+
+        private static String describe(DebugInjectorImpl.LocaleSnapshot snapshot) {
+            return "generation=" + snapshot.generation + " locale=" + snapshot.localeCode
+                    + " overrides=" + snapshot.overrides;
+        }
+    }
+
+}
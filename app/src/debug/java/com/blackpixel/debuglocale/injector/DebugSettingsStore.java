@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import java.util.Map;
+
+/**
+ * Storage backend for the debug settings.
+ *
+ * {@link SharedPreferencesSettingsStore} keeps them in the usual XML file,
+ * {@link MappedFileSettingsStore} in a memory-mapped append-only log. Opening a store may block
+ * on disk I/O, everything else is served from memory.
+ */
+interface DebugSettingsStore {
+
+    interface OnSettingChangedListener {
+        void onSettingChanged(DebugSettingsStore store, String key);
+    }
+
+    String getString(String key, String defValue);
+
+    /**
+     * Persists all values in a single write. A null value removes the key.
+     */
+    void putStrings(Map<String, String> values);
+
+    void registerListener(OnSettingChangedListener listener);
+
+    void unregisterListener(OnSettingChangedListener listener);
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Begin/end spans recorded into a preallocated ring buffer, exported as Chrome trace-event JSON
+ * (load it in chrome://tracing). Recording only claims a slot and fills in primitive arrays, so
+ * spans can stay in hot paths. Once the buffer is full the oldest events are overwritten.
+ *
+ * Export while spans are still being recorded is best effort, events being written at that
+ * moment may be skipped.
+ */
+public final class DebugTrace {
+
+    /**
+     * Time source for the spans, replaced in tests to get deterministic timestamps.
+     */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private static final char PHASE_BEGIN = 'B';
+    private static final char PHASE_END = 'E';
+
+    private final Clock clock;
+    private final int mask;
+
+    private final String[] names;
+    private final char[] phases;
+    private final long[] timestamps;
+    private final long[] threadIds;
+
+    /**
+     * Sequence of the next event, its slot is the low bits.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param capacity number of events kept, rounded up to a power of two
+     */
+    public DebugTrace(int capacity, Clock clock) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1) - 1) << 1;
+        if (size == 0) {
+            size = 1;
+        }
+        this.clock = clock;
+        this.mask = size - 1;
+        this.names = new String[size];
+        this.phases = new char[size];
+        this.timestamps = new long[size];
+        this.threadIds = new long[size];
+    }
+
+    public void begin(String name) {
+        record(name, PHASE_BEGIN);
+    }
+
+    public void end(String name) {
+        record(name, PHASE_END);
+    }
+
+    private void record(String name, char phase) {
+        int slot = (int) next.getAndIncrement() & mask;
+        names[slot] = name;
+        phases[slot] = phase;
+        threadIds[slot] = Thread.currentThread().getId();
+        timestamps[slot] = clock.nanoTime();
+    }
+
+    /**
+     * Number of events currently held, at most the capacity.
+     */
+    public int size() {
+        return (int) Math.min(next.get(), names.length);
+    }
+
+    @VisibleForTesting
+    int capacity() {
+        return names.length;
+    }
+
+    /**
+     * Writes the held events, oldest first, as a Chrome trace-event JSON object.
+     */
+    public void writeJson(Writer out, int pid) throws IOException {
+        long end = next.get();
+        long start = Math.max(0, end - names.length);
+
+        out.write("{\"traceEvents\":[");
+        boolean first = true;
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int) seq & mask;
+            String name = names[slot];
+            if (name == null) {
+                continue;
+            }
+
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+
+            out.write("\n{\"name\":\"");
+            writeEscaped(out, name);
+            out.write("\",\"ph\":\"");
+            out.write(phases[slot]);
+            out.write("\",\"ts\":");
+            writeMicros(out, timestamps[slot]);
+            out.write(",\"pid\":");
+            out.write(Integer.toString(pid));
+            out.write(",\"tid\":");
+            out.write(Long.toString(threadIds[slot]));
+            out.write('}');
+        }
+        out.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+    }
+
+    /**
+     * Trace-event timestamps are microseconds, keep the nanoseconds as three decimals.
+     */
+    private static void writeMicros(Writer out, long nanos) throws IOException {
+        if (nanos < 0) {
+            out.write('-');
+            nanos = -nanos;
+        }
+        out.write(Long.toString(nanos / 1000));
+        out.write('.');
+        long fraction = nanos % 1000;
+        if (fraction < 100) {
+            out.write('0');
+        }
+        if (fraction < 10) {
+            out.write('0');
+        }
+        out.write(Long.toString(fraction));
+    }
+
+    private static void writeEscaped(Writer out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import com.blackpixel.debuglocale.R;
+
+/**
+ * Binds the filtered {@link LocalePickerIndex} entries to recycled two-line rows, the second
+ * line showing the tag and its {@link TranslationCoverage}. Only the rows on screen are ever
+ * bound.
+ */
+class LocalePickerAdapter extends BaseAdapter {
+
+    private final LayoutInflater inflater;
+    private final Resources resources;
+    private final TranslationCoverage coverage;
+
+    private LocalePickerIndex index;
+    private String query = "";
+
+    private int[] matches;
+    private int matchCount;
+
+    // spare buffer, swapped with matches on every filter
+    private int[] scratch;
+
+    LocalePickerAdapter(Context context, LocalePickerIndex index, TranslationCoverage coverage) {
+        this.inflater = LayoutInflater.from(context);
+        this.resources = context.getResources();
+        this.coverage = coverage;
+        setIndex(index);
+    }
+
+    /**
+     * Swaps in a new index, for example once the display names are loaded, keeping the query.
+     */
+    void setIndex(LocalePickerIndex index) {
+        this.index = index;
+        this.matches = new int[index.size()];
+        this.scratch = new int[index.size()];
+        this.matchCount = index.filter(query, null, 0, matches);
+        notifyDataSetChanged();
+    }
+
+    void setQuery(String query) {
+        // a longer query can only match a subset, so only the current matches are searched
+        boolean narrows = query.startsWith(this.query);
+        int count = index.filter(query, narrows ? matches : null, matchCount, scratch);
+
+        int[] previous = matches;
+        matches = scratch;
+        scratch = previous;
+        matchCount = count;
+        this.query = query;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Position of the code in the filtered list, or -1 if it is filtered out.
+     */
+    int positionOf(String code) {
+        int entry = index.indexOf(code);
+        for (int i = 0; i < matchCount; i++) {
+            if (matches[i] == entry) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getCount() {
+        return matchCount;
+    }
+
+    @Override
+    public String getItem(int position) {
+        return index.codeAt(matches[position]);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return matches[position];
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        ViewHolder holder;
+        if (view == null) {
+            view = inflater.inflate(android.R.layout.simple_list_item_activated_2, parent, false);
+            holder = new ViewHolder(view);
+            view.setTag(holder);
+        } else {
+            holder = (ViewHolder) view.getTag();
+        }
+
+        int entry = matches[position];
+        holder.label.setText(index.labelAt(entry));
+        String code = index.codeAt(entry);
+        if (code.isEmpty()) {
+            holder.code.setText(code);
+        } else {
+            holder.code.setText(resources.getString(R.string.debug_settings_locale_coverage, code,
+                    coverage.percentTranslated(coverage.find(code))));
+        }
+        return view;
+    }
+
+    private static class ViewHolder {
+        final TextView label;
+        final TextView code;
+
+        ViewHolder(View view) {
+            label = (TextView) view.findViewById(android.R.id.text1);
+            code = (TextView) view.findViewById(android.R.id.text2);
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Searchable list of override locales for the debug settings screen: the phone default, the
+ * catalog locales and then every other locale the device knows about.
+ *
+ * Tags and label words are kept in a sorted token array, so a prefix query is two binary
+ * searches. Entries that only contain the query somewhere inside are listed after the prefix
+ * matches. Immutable once built.
+ */
+final class LocalePickerIndex {
+
+    private static final String LANGUAGE_UNDETERMINED = "und";
+
+    private static volatile LocalePickerIndex sAvailable;
+
+    private final String[] codes;
+    private final String[] labels;
+    private final Map<String, Integer> entries;
+
+    /**
+     * Lowercase "code label" of each entry, for substring matches.
+     */
+    private final String[] keys;
+
+    /**
+     * Lowercase tag and label words in sorted order, with the entry each one came from.
+     */
+    private final String[] tokens;
+    private final int[] tokenEntries;
+
+    @VisibleForTesting
+    LocalePickerIndex(String[] codes, String[] labels) {
+        this.codes = codes;
+        this.labels = labels;
+        this.keys = new String[codes.length];
+        this.entries = new HashMap<String, Integer>(codes.length * 4 / 3 + 1);
+
+        final List<String> tokenList = new ArrayList<String>(codes.length * 3);
+        List<Integer> entryList = new ArrayList<Integer>(codes.length * 3);
+        for (int i = 0; i < codes.length; i++) {
+            String code = codes[i].toLowerCase(Locale.ROOT);
+            String label = labels[i].toLowerCase(Locale.ROOT);
+            keys[i] = code + ' ' + label;
+            entries.put(codes[i], i);
+
+            if (!code.isEmpty()) {
+                tokenList.add(code);
+                entryList.add(i);
+            }
+            for (String word : label.split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    tokenList.add(word);
+                    entryList.add(i);
+                }
+            }
+        }
+
+        Integer[] order = new Integer[tokenList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return tokenList.get(a).compareTo(tokenList.get(b));
+            }
+        });
+
+        tokens = new String[order.length];
+        tokenEntries = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            tokens[i] = tokenList.get(order[i]);
+            tokenEntries[i] = entryList.get(order[i]);
+        }
+    }
+
+    /**
+     * Every locale the device knows, labeled with English display names. Building it formats
+     * several hundred display names, so it runs off the main thread and is cached for the
+     * process.
+     */
+    @WorkerThread
+    static LocalePickerIndex loadAvailable() {
+        LocalePickerIndex index = sAvailable;
+        if (index == null) {
+            synchronized (LocalePickerIndex.class) {
+                index = sAvailable;
+                if (index == null) {
+                    String[] codes = availableCodes();
+                    index = new LocalePickerIndex(codes, displayNames(codes));
+                    sAvailable = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The index built by {@link #loadAvailable()}, or null if it is not ready yet.
+     */
+    static LocalePickerIndex getAvailable() {
+        return sAvailable;
+    }
+
+    /**
+     * Just the phone default and the catalog locales, small enough to build on the main thread
+     * while the others load.
+     */
+    static LocalePickerIndex catalogOnly() {
+        return new LocalePickerIndex(LocaleCatalog.CODES, LocaleCatalog.LABELS);
+    }
+
+    /**
+     * Every available locale without formatting display names, labeled with the catalog labels
+     * and the bare tags. Shown until the display names are ready.
+     */
+    @WorkerThread
+    static LocalePickerIndex withoutDisplayNames() {
+        String[] codes = availableCodes();
+        String[] labels = new String[codes.length];
+        // the catalog comes first and in its own order
+        System.arraycopy(LocaleCatalog.LABELS, 0, labels, 0, LocaleCatalog.LABELS.length);
+        for (int i = LocaleCatalog.LABELS.length; i < codes.length; i++) {
+            labels[i] = codes[i];
+        }
+        return new LocalePickerIndex(codes, labels);
+    }
+
+    /**
+     * The phone default and catalog locales first, then the remaining available tags in order.
+     */
+    @VisibleForTesting
+    static String[] availableCodes() {
+        Locale[] available = Locale.getAvailableLocales();
+        String[] tags = new String[available.length];
+        for (int i = 0; i < available.length; i++) {
+            tags[i] = available[i].toLanguageTag();
+        }
+        Arrays.sort(tags);
+
+        Set<String> codes = new LinkedHashSet<String>(LocaleCatalog.CODES.length + tags.length);
+        codes.addAll(Arrays.asList(LocaleCatalog.CODES));
+        for (String tag : tags) {
+            if (!LANGUAGE_UNDETERMINED.equals(tag)) {
+                codes.add(tag);
+            }
+        }
+        return codes.toArray(new String[codes.size()]);
+    }
+
+    private static String[] displayNames(String[] codes) {
+        String[] labels = new String[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            int catalogIndex = LocaleCatalog.indexOf(codes[i]);
+            labels[i] = catalogIndex != -1
+                    ? LocaleCatalog.LABELS[catalogIndex]
+                    : Locale.forLanguageTag(codes[i]).getDisplayName(Locale.ENGLISH);
+        }
+        return labels;
+    }
+
+    int size() {
+        return codes.length;
+    }
+
+    String codeAt(int entry) {
+        return codes[entry];
+    }
+
+    String labelAt(int entry) {
+        return labels[entry];
+    }
+
+    /**
+     * Entry of the code, or -1.
+     */
+    int indexOf(String code) {
+        Integer entry = entries.get(code);
+        return entry != null ? entry : -1;
+    }
+
+    /**
+     * Writes the entries matching the query into results, prefix matches first, and returns
+     * how many there are. An empty query matches everything.
+     *
+     * @param candidates entries to search, typically the matches of a shorter query that this
+     *                   one extends, or null to search every entry
+     */
+    int filter(String query, int[] candidates, int candidateCount, int[] results) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+
+        boolean[] allowed = null;
+        if (candidates != null) {
+            allowed = new boolean[codes.length];
+            for (int i = 0; i < candidateCount; i++) {
+                allowed[candidates[i]] = true;
+            }
+        }
+
+        if (q.isEmpty()) {
+            int count = 0;
+            for (int i = 0; i < codes.length; i++) {
+                if (allowed == null || allowed[i]) {
+                    results[count++] = i;
+                }
+            }
+            return count;
+        }
+
+        boolean[] prefixMatch = new boolean[codes.length];
+        for (int i = lowerBound(q); i < tokens.length && tokens[i].startsWith(q); i++) {
+            prefixMatch[tokenEntries[i]] = true;
+        }
+
+        int count = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (prefixMatch[i] && (allowed == null || allowed[i])) {
+                results[count++] = i;
+            }
+        }
+        for (int i = 0; i < codes.length; i++) {
+            if (!prefixMatch[i] && (allowed == null || allowed[i]) && keys[i].contains(q)) {
+                results[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
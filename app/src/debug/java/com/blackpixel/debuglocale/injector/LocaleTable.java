@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interned Locales for override codes. Codes are parsed as BCP-47 language tags, so script,
+ * region and extensions survive (zh-Hant-TW, ar-EG, en-XA), and every spelling of the same tag
+ * resolves to the identical Locale instance.
+ */
+final class LocaleTable {
+
+    private static final String LANGUAGE_UNDETERMINED = "und";
+
+    /**
+     * Every code seen so far, as spelled by the caller.
+     */
+    private static final ConcurrentMap<String, Locale> sByCode =
+            new ConcurrentHashMap<String, Locale>();
+
+    /**
+     * The canonical instance for each normalized language tag.
+     */
+    private static final ConcurrentMap<String, Locale> sByTag =
+            new ConcurrentHashMap<String, Locale>();
+
+    private LocaleTable() {
+    }
+
+    /**
+     * Returns the canonical Locale for the code. Only the first lookup of a code parses it.
+     * Malformed codes are only identical to themselves.
+     */
+    static Locale forTag(String code) {
+        Locale locale = sByCode.get(code);
+        if (locale == null) {
+            locale = parse(code);
+            if (hasLanguageTag(locale)) {
+                locale = intern(locale);
+            }
+            Locale existing = sByCode.putIfAbsent(code, locale);
+            if (existing != null) {
+                locale = existing;
+            }
+        }
+        return locale;
+    }
+
+    /**
+     * Accepts BCP-47 tags as well as the legacy underscore form (zh_TW). Codes that are not
+     * well-formed tags are taken as a bare language, as {@code new Locale(code)} always did.
+     */
+    @VisibleForTesting
+    static Locale parse(String code) {
+        Locale locale = Locale.forLanguageTag(code.replace('_', '-'));
+        if (locale.getLanguage().isEmpty() && !code.isEmpty()) {
+            locale = new Locale(code);
+        }
+        return locale;
+    }
+
+    /**
+     * False for the bare languages of malformed codes, which all have the tag "und" and would
+     * otherwise share one entry.
+     */
+    private static boolean hasLanguageTag(Locale locale) {
+        return locale.getLanguage().isEmpty()
+                || !LANGUAGE_UNDETERMINED.equals(locale.toLanguageTag());
+    }
+
+    private static Locale intern(Locale locale) {
+        Locale existing = sByTag.putIfAbsent(locale.toLanguageTag(), locale);
+        return existing != null ? existing : locale;
+    }
+
+    @VisibleForTesting
+    static int size() {
+        return sByTag.size();
+    }
+
+    /**
+     * Forgets every code, so a test starts from an empty table.
+     */
+    @VisibleForTesting
+    static void clear() {
+        sByCode.clear();
+        sByTag.clear();
+    }
+
+}
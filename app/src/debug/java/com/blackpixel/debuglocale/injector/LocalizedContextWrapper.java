@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+
+import java.util.Locale;
+
+/**
+ * Base context for activities attached through {@link DebugInjector#wrapBaseContext(Context)}.
+ * Serves the cached localized Resources and remembers which locale and overrides they currently
+ * resolve for.
+ */
+class LocalizedContextWrapper extends ContextWrapper {
+
+    volatile Locale locale;
+
+    volatile ConfigurationOverrides overrides;
+
+    private final Resources resources;
+
+    LocalizedContextWrapper(Context base, Locale locale, ConfigurationOverrides overrides,
+                            Resources resources) {
+        super(base);
+        this.locale = locale;
+        this.overrides = overrides;
+        this.resources = resources;
+    }
+
+    /**
+     * Records that the Resources were updated in place for another override.
+     */
+    void rebind(Locale locale, ConfigurationOverrides overrides) {
+        this.locale = locale;
+        this.overrides = overrides;
+    }
+
+    @Override
+    public Resources getResources() {
+        return resources;
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default debug {@link MetricsSink}, recording into atomic counters and
+ * {@link LatencyHistogram}s so that the hot paths never take a lock.
+ */
+public class LockFreeMetrics implements MetricsSink {
+
+    final LatencyHistogram overrideLocaleLatency = new LatencyHistogram();
+    final LatencyHistogram configurationUpdateLatency = new LatencyHistogram();
+    final AtomicLong localeChanges = new AtomicLong();
+    final AtomicLong firstInstanceNanos = new AtomicLong(-1);
+    final AtomicLong preloadWaitNanos = new AtomicLong(-1);
+
+    @Override
+    public void onOverrideLocale(long durationNanos, boolean localeChanged) {
+        overrideLocaleLatency.record(durationNanos);
+        if (localeChanged) {
+            localeChanges.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onConfigurationUpdate(long durationNanos) {
+        configurationUpdateLatency.record(durationNanos);
+    }
+
+    @Override
+    public void onFirstInstance(long durationNanos) {
+        firstInstanceNanos.compareAndSet(-1, durationNanos);
+    }
+
+    @Override
+    public void onPreloadWait(long durationNanos) {
+        preloadWaitNanos.compareAndSet(-1, durationNanos);
+    }
+
+    public LatencyHistogram getOverrideLocaleLatency() {
+        return overrideLocaleLatency;
+    }
+
+    public LatencyHistogram getConfigurationUpdateLatency() {
+        return configurationUpdateLatency;
+    }
+
+    public long getOverrideLocaleCount() {
+        return overrideLocaleLatency.getCount();
+    }
+
+    public long getLocaleChangeCount() {
+        return localeChanges.get();
+    }
+
+    /**
+     * Time the first getInstance() took, or -1 if the injector has not been created yet.
+     */
+    public long getFirstInstanceNanos() {
+        return firstInstanceNanos.get();
+    }
+
+    /**
+     * Time the first getInstance() waited for the preloaded settings, or -1 if it did not
+     * happen (yet).
+     */
+    public long getPreloadWaitNanos() {
+        return preloadWaitNanos.get();
+    }
+
+    /**
+     * Writes everything recorded as one JSON object. Histograms are bucket counts, with the
+     * exclusive upper bounds in bucketLimitsNanos, the last one open-ended.
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\"firstInstanceNanos\":");
+        out.write(Long.toString(getFirstInstanceNanos()));
+        out.write(",\"preloadWaitNanos\":");
+        out.write(Long.toString(getPreloadWaitNanos()));
+        out.write(",\"localeChanges\":");
+        out.write(Long.toString(getLocaleChangeCount()));
+        out.write(",\n\"overrideLocale\":");
+        writeBuckets(out, overrideLocaleLatency);
+        out.write(",\n\"configurationUpdate\":");
+        writeBuckets(out, configurationUpdateLatency);
+        out.write(",\n\"bucketLimitsNanos\":[");
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT - 1; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(Long.toString(LatencyHistogram.getBucketLimitNanos(i)));
+        }
+        out.write("]}\n");
+    }
+
+    private static void writeBuckets(Writer out, LatencyHistogram histogram) throws IOException {
+        out.write('[');
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(Long.toString(histogram.getBucketCount(i)));
+        }
+        out.write(']');
+    }
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * {@link DebugSettingsStore} kept in a memory-mapped, append-only log.
+ *
+ * Each {@link #putStrings} appends one record holding the whole batch, so a write costs the
+ * size of the change instead of a rewrite of every setting. When the mapped region is full the
+ * live values are compacted into a fresh file that replaces the log with an atomic rename.
+ *
+ * File layout: an 8 byte header (magic, version) followed by records of
+ * {@code [int payloadLength][int crc32][payload]}. Loading replays records until the first
+ * zero length or checksum mismatch, so a record torn by a crash is dropped as a whole along
+ * with everything after it. Only safe for use by a single process.
+ */
+class MappedFileSettingsStore implements DebugSettingsStore {
+
+    static final int MAGIC = 0x44534c47;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int INITIAL_CAPACITY = 4096;
+
+    private final File file;
+    private final File compactFile;
+    private final Map<String, String> values = new ConcurrentHashMap<String, String>();
+    private final CopyOnWriteArrayList<OnSettingChangedListener> listeners =
+            new CopyOnWriteArrayList<OnSettingChangedListener>();
+
+    private MappedByteBuffer buffer;
+    private int writePosition;
+
+    MappedFileSettingsStore(File file) throws IOException {
+        this.file = file;
+        this.compactFile = new File(file.getPath() + ".compact");
+        open();
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        String value = values.get(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public void putStrings(Map<String, String> changes) {
+        synchronized (this) {
+            try {
+                append(changes);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write debug settings to " + file, e);
+            }
+        }
+
+        for (String key : changes.keySet()) {
+            for (OnSettingChangedListener listener : listeners) {
+                listener.onSettingChanged(this, key);
+            }
+        }
+    }
+
+    @Override
+    public void registerListener(OnSettingChangedListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void unregisterListener(OnSettingChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    synchronized int getWritePosition() {
+        return writePosition;
+    }
+
+    synchronized int getCapacity() {
+        return buffer.capacity();
+    }
+
+    private void open() throws IOException {
+        boolean exists = file.length() >= HEADER_SIZE;
+        buffer = map(file, (int) Math.max(INITIAL_CAPACITY, file.length()));
+
+        if (!exists || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            // new or unrecognized file, start an empty log
+            zero(0);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            writePosition = HEADER_SIZE;
+            buffer.force();
+            return;
+        }
+
+        writePosition = replay();
+        if (writePosition + 4 <= buffer.capacity() && buffer.getInt(writePosition) != 0) {
+            // a torn record, clear it so later appends are not followed by its leftovers
+            zero(writePosition);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Applies every intact record and returns the position right after the last one.
+     */
+    private int replay() {
+        int position = HEADER_SIZE;
+        int capacity = buffer.capacity();
+        CRC32 crc = new CRC32();
+
+        while (position + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > capacity - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + RECORD_HEADER_SIZE);
+            view.get(payload);
+
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            Map<String, String> batch;
+            try {
+                batch = decode(payload);
+            } catch (IOException e) {
+                break;
+            }
+            apply(values, batch);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Writes the changes to the log, then to {@link #values}. If either fails, the values keep
+     * matching what the file holds.
+     */
+    private void append(Map<String, String> changes) throws IOException {
+        byte[] payload = encode(changes);
+
+        if (writePosition + RECORD_HEADER_SIZE + payload.length > buffer.capacity()) {
+            // the compacted log already contains the changes
+            Map<String, String> live = new HashMap<String, String>(values);
+            apply(live, changes);
+            compact(live);
+            apply(values, changes);
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        // length last, a record is not visible to replay() until it is complete
+        ByteBuffer view = buffer.duplicate();
+        view.position(writePosition + RECORD_HEADER_SIZE);
+        view.put(payload);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.putInt(writePosition, payload.length);
+        buffer.force();
+
+        writePosition += RECORD_HEADER_SIZE + payload.length;
+        apply(values, changes);
+    }
+
+    private static void apply(Map<String, String> target, Map<String, String> batch) {
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            if (entry.getValue() == null) {
+                target.remove(entry.getKey());
+            } else {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Rewrites the live values as a single record into a new file and swaps it in.
+     */
+    private void compact(Map<String, String> live) throws IOException {
+        byte[] payload = encode(live);
+        int size = HEADER_SIZE + RECORD_HEADER_SIZE + payload.length;
+
+        // leave at least as much room for appends as the live data takes
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(payload.length);
+        out.putInt((int) crc.getValue());
+        out.put(payload);
+        out.flip();
+
+        RandomAccessFile raf = new RandomAccessFile(compactFile, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            raf.setLength(capacity);
+            channel.force(true);
+        } finally {
+            raf.close();
+        }
+
+        if (!compactFile.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+
+        buffer = map(file, capacity);
+        writePosition = size;
+    }
+
+    private void zero(int from) {
+        for (int i = from; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private static MappedByteBuffer map(File file, int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // the mapping stays valid after the channel is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] encode(Map<String, String> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(batch.size());
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeBoolean(entry.getValue() != null);
+            if (entry.getValue() != null) {
+                out.writeUTF(entry.getValue());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, String> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        Map<String, String> batch = new LinkedHashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            batch.put(key, in.readBoolean() ? in.readUTF() : null);
+        }
+        return batch;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Applies the debug locale override to every Activity when it resumes. Activities that already
+ * applied the current override generation return straight away.
+ */
+class OverrideLocaleLifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
+
+    /**
+     * Activity that resumed last, kept after onPause() so resuming it again allocates nothing.
+     * Only touched from the main thread.
+     */
+    private WeakReference<Activity> resumedActivity;
+
+    /**
+     * Whether resumedActivity is between onResume() and onPause().
+     */
+    private boolean resumed;
+
+    Activity getResumedActivity() {
+        return resumed ? resumedActivity.get() : null;
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        if (resumedActivity == null || resumedActivity.get() != activity) {
+            resumedActivity = new WeakReference<Activity>(activity);
+        }
+        resumed = true;
+        DebugInjector.getInstance(activity).overrideLocale(activity);
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+        if (getResumedActivity() == activity) {
+            resumed = false;
+        }
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        ((DebugInjectorImpl) DebugInjector.getInstance(activity)).onActivityDestroyed(activity);
+    }
+
+}
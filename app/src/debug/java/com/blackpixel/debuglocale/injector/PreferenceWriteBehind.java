@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write-behind buffer in front of a {@link DebugSettingsStore}.
+ *
+ * Every store write hits the disk (for SharedPreferences a rewrite of the whole XML file), so
+ * writes that do not change anything are dropped and bursts of changes are merged into a single
+ * write, issued after {@link #FLUSH_DELAY_MILLIS} of quiet or when {@link #flush()} is called.
+ */
+class PreferenceWriteBehind {
+
+    static final long FLUSH_DELAY_MILLIS = 500;
+
+    /**
+     * Runs the delayed flush. Abstracted so tests can drive it by hand.
+     */
+    interface Scheduler {
+        void schedule(Runnable runnable, long delayMillis);
+
+        void cancel(Runnable runnable);
+    }
+
+    private final DebugSettingsStore settingsStore;
+    private final Scheduler scheduler;
+    private final Map<String, String> pendingStrings = new LinkedHashMap<String, String>();
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    PreferenceWriteBehind(DebugSettingsStore settingsStore) {
+        this(settingsStore, new MainThreadScheduler());
+    }
+
+    PreferenceWriteBehind(DebugSettingsStore settingsStore, Scheduler scheduler) {
+        this.settingsStore = settingsStore;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Buffers the value, null resets the key. Writes that leave what the key reads as unchanged
+     * are dropped, where an unset key reads as defValue. So writing the default to a key that
+     * was never set does not touch the disk.
+     */
+    synchronized void putString(String key, String value, String defValue) {
+        String stored = settingsStore.getString(key, defValue);
+        String current = pendingStrings.containsKey(key)
+                ? valueOrDefault(pendingStrings.get(key), defValue) : stored;
+        if (equal(current, valueOrDefault(value, defValue))) {
+            return;
+        }
+
+        if (equal(stored, valueOrDefault(value, defValue))) {
+            // changed back to what is already on disk
+            pendingStrings.remove(key);
+        } else {
+            pendingStrings.put(key, value);
+        }
+
+        scheduler.cancel(flushRunnable);
+        if (!pendingStrings.isEmpty()) {
+            scheduler.schedule(flushRunnable, FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Reads through the buffer, so values that have not been flushed yet are visible.
+     */
+    synchronized String getString(String key, String defValue) {
+        if (pendingStrings.containsKey(key)) {
+            String value = pendingStrings.get(key);
+            return value != null ? value : defValue;
+        }
+        return settingsStore.getString(key, defValue);
+    }
+
+    /**
+     * Persists everything pending in one store write.
+     */
+    synchronized void flush() {
+        scheduler.cancel(flushRunnable);
+        if (pendingStrings.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> batch = new LinkedHashMap<String, String>(pendingStrings);
+        pendingStrings.clear();
+        settingsStore.putStrings(batch);
+    }
+
+    private static String valueOrDefault(String value, String defValue) {
+        return value != null ? value : defValue;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class MainThreadScheduler implements Scheduler {
+
+        // created on first use, nothing is scheduled until a setting changes
+        private Handler handler;
+
+        @Override
+        public void schedule(Runnable runnable, long delayMillis) {
+            if (handler == null) {
+                handler = new Handler(Looper.getMainLooper());
+            }
+            handler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable runnable) {
+            if (handler != null) {
+                handler.removeCallbacks(runnable);
+            }
+        }
+    }
+
+}
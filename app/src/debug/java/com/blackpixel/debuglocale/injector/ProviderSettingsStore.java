@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DebugSettingsStore} for the app's secondary processes, which reach the main process'
+ * settings through {@link DebugSettingsProvider}.
+ *
+ * Values are fetched once per key and then served from memory. The provider announces every
+ * change, which drops the cached value and notifies the listeners, so an override set from the
+ * settings screen reaches every process without polling.
+ */
+class ProviderSettingsStore implements DebugSettingsStore {
+
+    /**
+     * Cached for keys the main process has no value for, the map cannot hold null.
+     */
+    private static final String MISSING = new String("");
+
+    private final ContentResolver resolver;
+    private final Uri contentUri;
+
+    @VisibleForTesting
+    final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Bumped by every change notification, so a fetch that raced one does not cache its result.
+     */
+    private final AtomicInteger invalidations = new AtomicInteger();
+
+    private final CopyOnWriteArrayList<OnSettingChangedListener> listeners =
+            new CopyOnWriteArrayList<OnSettingChangedListener>();
+
+    @VisibleForTesting
+    final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            onSettingChanged(uri != null ? uri.getLastPathSegment() : null);
+        }
+    };
+
+    static ProviderSettingsStore open(Context context) {
+        ProviderSettingsStore store = new ProviderSettingsStore(context.getContentResolver(),
+                DebugSettingsProvider.contentUri(context));
+        // delivered on a binder thread, the listeners are thread-safe
+        store.resolver.registerContentObserver(store.contentUri, true, store.observer);
+        return store;
+    }
+
+    @VisibleForTesting
+    ProviderSettingsStore(ContentResolver resolver, Uri contentUri) {
+        this.resolver = resolver;
+        this.contentUri = contentUri;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        String value = cache.get(key);
+        if (value == null) {
+            int seen = invalidations.get();
+            String fetched = fetch(key);
+            value = fetched != null ? fetched : MISSING;
+            cache.put(key, value);
+            if (invalidations.get() != seen) {
+                // may be older than the change, the listeners read it again
+                cache.remove(key, value);
+            }
+        }
+        return value != MISSING ? value : defValue;
+    }
+
+    @Override
+    public void putStrings(Map<String, String> values) {
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = entry.getValue();
+            cache.put(entry.getKey(), value != null ? value : MISSING);
+        }
+        send(values);
+    }
+
+    @Override
+    public void registerListener(OnSettingChangedListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void unregisterListener(OnSettingChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Drops the cached value and tells the listeners. A null key means the provider did not say
+     * which setting changed, so every cached one is treated as changed.
+     */
+    @VisibleForTesting
+    void onSettingChanged(String key) {
+        invalidations.incrementAndGet();
+        if (key != null) {
+            cache.remove(key);
+            notifyListeners(key);
+        } else {
+            String[] keys = cache.keySet().toArray(new String[0]);
+            cache.clear();
+            for (String cachedKey : keys) {
+                notifyListeners(cachedKey);
+            }
+        }
+    }
+
+    private void notifyListeners(String key) {
+        for (OnSettingChangedListener listener : listeners) {
+            listener.onSettingChanged(this, key);
+        }
+    }
+
+    /**
+     * Reads one value from the main process, null if it has none.
+     */
+    @VisibleForTesting
+    String fetch(String key) {
+        Bundle result = resolver.call(contentUri, DebugSettingsProvider.METHOD_GET, key, null);
+        return result != null ? result.getString(DebugSettingsProvider.KEY_VALUE) : null;
+    }
+
+    /**
+     * Writes the values to the main process in one call.
+     */
+    @VisibleForTesting
+    void send(Map<String, String> values) {
+        Bundle extras = new Bundle();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            extras.putString(entry.getKey(), entry.getValue());
+        }
+        resolver.call(contentUri, DebugSettingsProvider.METHOD_PUT, null, extras);
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.SharedPreferences;
+
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link DebugSettingsStore} backed by SharedPreferences, the original storage.
+ */
+class SharedPreferencesSettingsStore implements DebugSettingsStore,
+        SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private final SharedPreferences sharedPrefs;
+    private final CopyOnWriteArrayList<OnSettingChangedListener> listeners =
+            new CopyOnWriteArrayList<OnSettingChangedListener>();
+
+    SharedPreferencesSettingsStore(SharedPreferences sharedPrefs) {
+        this.sharedPrefs = sharedPrefs;
+        // SharedPreferences only holds listeners weakly, this store keeps itself reachable
+        sharedPrefs.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        return sharedPrefs.getString(key, defValue);
+    }
+
+    @Override
+    public void putStrings(Map<String, String> values) {
+        SharedPreferences.Editor editor = sharedPrefs.edit();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getValue() == null) {
+                editor.remove(entry.getKey());
+            } else {
+                editor.putString(entry.getKey(), entry.getValue());
+            }
+        }
+        editor.apply();
+    }
+
+    @Override
+    public void registerListener(OnSettingChangedListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void unregisterListener(OnSettingChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        for (OnSettingChangedListener listener : listeners) {
+            listener.onSettingChanged(this, key);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which default strings each locale falls back on, from the {@link TranslationIndex} generated
+ * at build time. Every query is a map lookup plus bit tests, nothing is read from resources.
+ *
+ * A locale is identified by its position from {@link #find(String)}. {@link #UNTRANSLATED}
+ * stands for locales without a values folder, which fall back on every string.
+ */
+final class TranslationCoverage {
+
+    static final int UNTRANSLATED = -1;
+
+    private static final TranslationCoverage GENERATED = new TranslationCoverage(
+            TranslationIndex.KEYS, TranslationIndex.TAGS, TranslationIndex.MISSING);
+
+    private final String[] keys;
+    private final long[][] missing;
+    private final int[] missingCounts;
+    private final Map<String, Integer> positions;
+
+    @VisibleForTesting
+    TranslationCoverage(String[] keys, String[] tags, long[][] missing) {
+        this.keys = keys;
+        this.missing = missing;
+        this.missingCounts = new int[tags.length];
+        this.positions = new HashMap<String, Integer>(tags.length * 2);
+        for (int i = 0; i < tags.length; i++) {
+            positions.put(tags[i], i);
+            for (long word : missing[i]) {
+                missingCounts[i] += Long.bitCount(word);
+            }
+        }
+    }
+
+    static TranslationCoverage get() {
+        return GENERATED;
+    }
+
+    /**
+     * Position of the locale's resources: the exact tag, else its language like resource
+     * resolution falls back to, else {@link #UNTRANSLATED}.
+     */
+    int find(String tag) {
+        Integer position = positions.get(tag);
+        if (position == null) {
+            int dash = tag.indexOf('-');
+            if (dash != -1) {
+                position = positions.get(tag.substring(0, dash));
+            }
+        }
+        return position != null ? position : UNTRANSLATED;
+    }
+
+    int keyCount() {
+        return keys.length;
+    }
+
+    int missingCount(int locale) {
+        return locale != UNTRANSLATED ? missingCounts[locale] : keys.length;
+    }
+
+    /**
+     * Share of the default strings the locale translates, rounded down, 100 if there are none.
+     */
+    int percentTranslated(int locale) {
+        if (keys.length == 0) {
+            return 100;
+        }
+        return (keys.length - missingCount(locale)) * 100 / keys.length;
+    }
+
+    boolean isMissing(int locale, int key) {
+        return locale == UNTRANSLATED || (missing[locale][key >>> 6] & (1L << key)) != 0;
+    }
+
+    /**
+     * Names of the strings the locale falls back on, in key order.
+     */
+    List<String> missingKeys(int locale) {
+        List<String> names = new ArrayList<String>(missingCount(locale));
+        if (locale == UNTRANSLATED) {
+            for (String key : keys) {
+                names.add(key);
+            }
+            return names;
+        }
+        long[] bits = missing[locale];
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                names.add(keys[(word << 6) + Long.numberOfTrailingZeros(remaining)]);
+                remaining &= remaining - 1;
+            }
+        }
+        return names;
+    }
+
+}
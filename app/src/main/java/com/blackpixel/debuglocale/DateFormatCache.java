@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale;
+
+import java.text.DateFormat;
+import java.util.Locale;
+
+/**
+ * Small LRU cache of DateFormat instances keyed by Locale and style.
+ *
+ * DateFormat.getDateTimeInstance() loads locale data on every call, which is wasted work when the
+ * locale has not changed between refreshes. Lookups scan a fixed array and a hit allocates
+ * nothing. Formats keep the time zone they were created with, {@link TimeZoneChangedReceiver}
+ * drops them when it changes. The returned formats are not thread-safe and are meant for the
+ * main thread.
+ */
+public final class DateFormatCache {
+
+    static final int MAX_SIZE = 8;
+
+    private static final Locale[] sLocales = new Locale[MAX_SIZE];
+    private static final int[] sDateStyles = new int[MAX_SIZE];
+    private static final int[] sTimeStyles = new int[MAX_SIZE];
+    private static final DateFormat[] sFormats = new DateFormat[MAX_SIZE];
+    private static int sSize;
+
+    private DateFormatCache() {
+    }
+
+    public static synchronized DateFormat getDateTimeInstance(int dateStyle, int timeStyle,
+                                                              Locale locale) {
+        for (int i = 0; i < sSize; i++) {
+            if (sDateStyles[i] == dateStyle && sTimeStyles[i] == timeStyle
+                    && sLocales[i].equals(locale)) {
+                DateFormat format = sFormats[i];
+                moveToFront(i, locale, dateStyle, timeStyle, format);
+                return format;
+            }
+        }
+
+        DateFormat format = DateFormat.getDateTimeInstance(dateStyle, timeStyle, locale);
+        if (sSize < MAX_SIZE) {
+            sSize++;
+        }
+        // shifting everything down drops the least recently used entry when full
+        moveToFront(sSize - 1, locale, dateStyle, timeStyle, format);
+        return format;
+    }
+
+    /**
+     * Drops every cached format. Called when the locale override or the time zone changes.
+     */
+    public static synchronized void invalidate() {
+        for (int i = 0; i < sSize; i++) {
+            sLocales[i] = null;
+            sFormats[i] = null;
+        }
+        sSize = 0;
+    }
+
+    static synchronized int size() {
+        return sSize;
+    }
+
+    private static void moveToFront(int index, Locale locale, int dateStyle, int timeStyle,
+                                    DateFormat format) {
+        System.arraycopy(sLocales, 0, sLocales, 1, index);
+        System.arraycopy(sDateStyles, 0, sDateStyles, 1, index);
+        System.arraycopy(sTimeStyles, 0, sTimeStyles, 1, index);
+        System.arraycopy(sFormats, 0, sFormats, 1, index);
+        sLocales[0] = locale;
+        sDateStyles[0] = dateStyle;
+        sTimeStyles[0] = timeStyle;
+        sFormats[0] = format;
+    }
+
+}
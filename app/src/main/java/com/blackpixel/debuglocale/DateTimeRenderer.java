@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale;
+
+import android.widget.TextView;
+
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.util.Date;
+
+/**
+ * Formats dates into a buffer that is reused across refreshes, so rendering the same view over
+ * and over does not create a new Date and StringBuffer each time. Not thread-safe.
+ */
+final class DateTimeRenderer {
+
+    private final Date date = new Date();
+    private final StringBuffer buffer = new StringBuffer(64);
+    private final FieldPosition fieldPosition = new FieldPosition(0);
+
+    /**
+     * Sets the formatted time on the view. TextView copies the text, so the buffer can be
+     * rewritten by the next call, whichever view it is for.
+     */
+    void render(TextView textView, DateFormat format, long timeMillis) {
+        date.setTime(timeMillis);
+        buffer.setLength(0);
+        format.format(date, buffer, fieldPosition);
+        textView.setText(buffer);
+    }
+
+}
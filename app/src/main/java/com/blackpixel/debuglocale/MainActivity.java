@@ -21,6 +21,7 @@
 
 package com.blackpixel.debuglocale;
 
+import android.content.Context;
 import android.os.Bundle;
 import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
@@ -29,18 +30,33 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.widget.TextView;
 
+import com.blackpixel.debuglocale.injector.ConfigurationOverrides;
 import com.blackpixel.debuglocale.injector.DebugInjector;
+import com.blackpixel.debuglocale.injector.OnOverrideChangedListener;
 
 import java.text.DateFormat;
-import java.util.Date;
+import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
 
-    private DebugInjector debugInjector = null;
+    private static final String TRACE_UPDATE_UI = "MainActivity.updateUi";
+
+    // every DebugInjector call sits behind BuildConfig.DEBUG and no field holds one, so release
+    // builds have no reference left to it once javac drops the dead branches
 
     private TextView helloWorldTextView;
     private TextView dateTimeTextView;
 
+    private final DateTimeRenderer dateTimeRenderer = new DateTimeRenderer();
+
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        if (BuildConfig.DEBUG) {
+            newBase = DebugInjector.getInstance(newBase).wrapBaseContext(newBase);
+        }
+        super.attachBaseContext(newBase);
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -50,8 +66,25 @@ public class MainActivity extends AppCompatActivity {
         dateTimeTextView = (TextView) findViewById(R.id.main_date_time_tv);
 
         if (BuildConfig.DEBUG) {
-            debugInjector = DebugInjector.getInstance(this);
+            // a new override only rebinds the texts below instead of recreating the Activity
+            DebugInjector.getInstance(this).registerOverrideListener(this,
+                    new OnOverrideChangedListener() {
+                        @Override
+                        public void onOverrideChanged(Locale locale,
+                                                      ConfigurationOverrides overrides) {
+                            updateUi();
+                        }
+                    });
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (BuildConfig.DEBUG) {
+            // the listener holds this Activity, which would keep it from being collected
+            DebugInjector.getInstance(this).unregisterOverrideListener(this);
         }
+        super.onDestroy();
     }
 
     @Override
@@ -69,17 +102,24 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onResume() {
+        // debug builds apply the locale override from the lifecycle callbacks in super.onResume()
         super.onResume();
-        if (BuildConfig.DEBUG) {
-            debugInjector.overrideLocale(this);
-        }
         updateUi();
     }
 
     private void updateUi() {
+        if (BuildConfig.DEBUG) {
+            DebugInjector.getInstance(this).traceBegin(TRACE_UPDATE_UI);
+        }
         helloWorldTextView.setText(R.string.hello_world);
-        dateTimeTextView.setText(DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG)
-                .format(new Date()));
+        // the localized base context leaves Locale.getDefault() alone, use the resources locale
+        Locale locale = getResources().getConfiguration().locale;
+        DateFormat dateFormat = DateFormatCache.getDateTimeInstance(DateFormat.LONG,
+                DateFormat.LONG, locale);
+        dateTimeRenderer.render(dateTimeTextView, dateFormat, System.currentTimeMillis());
+        if (BuildConfig.DEBUG) {
+            DebugInjector.getInstance(this).traceEnd(TRACE_UPDATE_UI);
+        }
     }
 
     @Override
@@ -98,7 +138,7 @@ public class MainActivity extends AppCompatActivity {
                 break;
             case R.id.setting_debug:
                 if (BuildConfig.DEBUG) {
-                    debugInjector.startSettingsActivity(this);
+                    DebugInjector.getInstance(this).startSettingsActivity(this);
                 }
                 handled = true;
                 break;
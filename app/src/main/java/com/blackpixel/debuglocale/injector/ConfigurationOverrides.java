@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+/**
+ * Configuration fields forced on top of the locale override. Every field has a value that leaves
+ * the system setting alone, and {@link #NONE} uses all of them.
+ *
+ * Immutable, so the injector can tell whether anything changed by comparing references.
+ */
+public final class ConfigurationOverrides {
+
+    /**
+     * Follow the layout direction of the locale.
+     */
+    public static final int LAYOUT_DIRECTION_LOCALE = -1;
+    /**
+     * Same value as View.LAYOUT_DIRECTION_LTR.
+     */
+    public static final int LAYOUT_DIRECTION_LTR = 0;
+    /**
+     * Same value as View.LAYOUT_DIRECTION_RTL.
+     */
+    public static final int LAYOUT_DIRECTION_RTL = 1;
+
+    /**
+     * Keep the font scale picked in the system settings.
+     */
+    public static final float FONT_SCALE_SYSTEM = 0f;
+
+    /**
+     * Keep the system night mode. Otherwise Configuration.UI_MODE_NIGHT_NO or UI_MODE_NIGHT_YES.
+     */
+    public static final int NIGHT_MODE_SYSTEM = 0;
+
+    public static final ConfigurationOverrides NONE = new ConfigurationOverrides(
+            LAYOUT_DIRECTION_LOCALE, FONT_SCALE_SYSTEM, NIGHT_MODE_SYSTEM);
+
+    public final int layoutDirection;
+    public final float fontScale;
+    public final int nightMode;
+
+    public ConfigurationOverrides(int layoutDirection, float fontScale, int nightMode) {
+        this.layoutDirection = layoutDirection;
+        this.fontScale = fontScale;
+        this.nightMode = nightMode;
+    }
+
+    public boolean isEmpty() {
+        return layoutDirection == LAYOUT_DIRECTION_LOCALE
+                && fontScale == FONT_SCALE_SYSTEM
+                && nightMode == NIGHT_MODE_SYSTEM;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConfigurationOverrides)) {
+            return false;
+        }
+        ConfigurationOverrides other = (ConfigurationOverrides) o;
+        return layoutDirection == other.layoutDirection
+                && Float.compare(fontScale, other.fontScale) == 0
+                && nightMode == other.nightMode;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = layoutDirection;
+        result = 31 * result + Float.floatToIntBits(fontScale);
+        result = 31 * result + nightMode;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigurationOverrides{layoutDirection=" + layoutDirection
+                + ", fontScale=" + fontScale + ", nightMode=" + nightMode + '}';
+    }
+
+}
@@ -23,6 +23,7 @@ package com.blackpixel.debuglocale.injector;
 
 import android.app.Activity;
 import android.content.Context;
+import android.support.annotation.VisibleForTesting;
 
 /**
  * Abstract class demonstration the DebugInjector Pattern.
@@ -33,22 +34,103 @@ import android.content.Context;
  */
 public abstract class DebugInjector {
 
-    private static DebugInjector sDebugInjector;
+    private static volatile DebugInjector sDebugInjector;
 
+    /**
+     * Returns the injector, creating it on first use. Once it exists this is a single volatile
+     * read without locking, so any thread can call it. Only the application context is kept,
+     * passing an Activity does not leak it.
+     */
     public static DebugInjector getInstance(Context context) {
+        DebugInjector debugInjector = sDebugInjector;
+        if (debugInjector == null) {
+            debugInjector = createInstance(context);
+        }
+        return debugInjector;
+    }
 
+    /**
+     * Creates the injector now rather than on the first {@link #getInstance(Context)}, for
+     * example from Application.onCreate(). Safe to call more than once and from any thread.
+     */
+    public static void initialize(Context context) {
+        getInstance(context);
+    }
+
+    private static synchronized DebugInjector createInstance(Context context) {
         if (sDebugInjector == null) {
+            // null while an Application is still being attached
+            Context appContext = context.getApplicationContext();
+
             // There are 2 version of DebugInjectorImpl.java
             //    debug   - actual implementation
             //    release - no-op implementation
-            sDebugInjector = new DebugInjectorImpl(context);
-
+            sDebugInjector = new DebugInjectorImpl(appContext != null ? appContext : context);
         }
         return sDebugInjector;
     }
 
+    /**
+     * Drops the instance so the next {@link #getInstance(Context)} creates a new one.
+     */
+    @VisibleForTesting
+    static synchronized void resetInstance() {
+        sDebugInjector = null;
+    }
+
     public abstract void startSettingsActivity(Activity activity);
 
     public abstract boolean overrideLocale(Activity activity);
 
+    /**
+     * Wraps the Context an Activity receives in attachBaseContext() so that it resolves resources
+     * for the override locale, leaving the process-wide default locale untouched.
+     */
+    public abstract Context wrapBaseContext(Context base);
+
+    /**
+     * Replaces the sink receiving hot-path timings. The startup timings, taken before there was
+     * a chance to set it, are reported to it right away. Release builds never record anything.
+     */
+    public abstract void setMetricsSink(MetricsSink metricsSink);
+
+    /**
+     * Forces layout direction, font scale and night mode on top of the locale override. Every
+     * field is applied together with the locale, in a single configuration update per resume.
+     * Release builds ignore it.
+     */
+    public abstract void setConfigurationOverrides(ConfigurationOverrides overrides);
+
+    /**
+     * Release builds always return {@link ConfigurationOverrides#NONE}.
+     */
+    public abstract ConfigurationOverrides getConfigurationOverrides();
+
+    /**
+     * Opens a span in the debug trace, closed by {@link #traceEnd(String)} on the same thread.
+     * Release builds record nothing.
+     */
+    public abstract void traceBegin(String name);
+
+    public abstract void traceEnd(String name);
+
+    /**
+     * Current values of every registered {@link DebugKey}. Release builds always return
+     * {@link DebugSettings#DEFAULTS}.
+     */
+    public abstract DebugSettings getSettings();
+
+    /**
+     * Switches the Activity to a changed override in place instead of recreating it on its next
+     * resume. Its resources are updated and the listener rebinds the views that depend on the
+     * locale. Only a change of locale can be applied this way, one of layout direction, font
+     * scale or night mode still waits for the next resume. Ends when the Activity is destroyed,
+     * call {@link #unregisterOverrideListener(Activity)} from onDestroy() as well: the listener
+     * is held strongly and usually references the Activity. Release builds ignore it.
+     */
+    public abstract void registerOverrideListener(Activity activity,
+                                                  OnOverrideChangedListener listener);
+
+    public abstract void unregisterOverrideListener(Activity activity);
+
 }
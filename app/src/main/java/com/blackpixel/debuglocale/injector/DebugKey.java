@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed key for a debug override, read through {@link DebugSettings}.
+ *
+ * Keys are registered once, typically as static finals, and get a slot id within their type so
+ * values live unboxed in primitive arrays. In release builds every key resolves to its default.
+ */
+public abstract class DebugKey {
+
+    private static final List<IntKey> sIntKeys = new ArrayList<IntKey>();
+    private static final List<LongKey> sLongKeys = new ArrayList<LongKey>();
+    private static final List<BooleanKey> sBooleanKeys = new ArrayList<BooleanKey>();
+    private static final Map<String, DebugKey> sKeys = new HashMap<String, DebugKey>();
+    private static volatile int sKeyCount;
+
+    /**
+     * Name of the persisted setting.
+     */
+    public final String name;
+
+    /**
+     * Slot in the {@link DebugSettings} array of the key's type.
+     */
+    final int id;
+
+    private DebugKey(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * The default value in the form it is stored, what the key reads as while unset.
+     */
+    abstract String storedDefault();
+
+    public static synchronized IntKey intKey(String name, int defaultValue) {
+        IntKey key = new IntKey(name, sIntKeys.size(), defaultValue);
+        register(key);
+        sIntKeys.add(key);
+        return key;
+    }
+
+    public static synchronized LongKey longKey(String name, long defaultValue) {
+        LongKey key = new LongKey(name, sLongKeys.size(), defaultValue);
+        register(key);
+        sLongKeys.add(key);
+        return key;
+    }
+
+    public static synchronized BooleanKey booleanKey(String name, boolean defaultValue) {
+        BooleanKey key = new BooleanKey(name, sBooleanKeys.size(), defaultValue);
+        register(key);
+        sBooleanKeys.add(key);
+        return key;
+    }
+
+    static synchronized IntKey[] intKeys() {
+        return sIntKeys.toArray(new IntKey[sIntKeys.size()]);
+    }
+
+    static synchronized LongKey[] longKeys() {
+        return sLongKeys.toArray(new LongKey[sLongKeys.size()]);
+    }
+
+    static synchronized BooleanKey[] booleanKeys() {
+        return sBooleanKeys.toArray(new BooleanKey[sBooleanKeys.size()]);
+    }
+
+    /**
+     * Total number of registered keys, readable without taking the registry lock.
+     */
+    static int keyCount() {
+        return sKeyCount;
+    }
+
+    static synchronized boolean isRegistered(String name) {
+        return sKeys.containsKey(name);
+    }
+
+    /**
+     * The registered key with the name, or null.
+     */
+    static synchronized DebugKey forName(String name) {
+        return sKeys.get(name);
+    }
+
+    private static void register(DebugKey key) {
+        if (sKeys.containsKey(key.name)) {
+            throw new IllegalArgumentException("Debug key already registered: " + key.name);
+        }
+        sKeys.put(key.name, key);
+        sKeyCount++;
+    }
+
+    public static final class IntKey extends DebugKey {
+        public final int defaultValue;
+
+        private IntKey(String name, int id, int defaultValue) {
+            super(name, id);
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        String storedDefault() {
+            return String.valueOf(defaultValue);
+        }
+    }
+
+    public static final class LongKey extends DebugKey {
+        public final long defaultValue;
+
+        private LongKey(String name, int id, long defaultValue) {
+            super(name, id);
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        String storedDefault() {
+            return String.valueOf(defaultValue);
+        }
+    }
+
+    public static final class BooleanKey extends DebugKey {
+        public final boolean defaultValue;
+
+        private BooleanKey(String name, int id, boolean defaultValue) {
+            super(name, id);
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        String storedDefault() {
+            return String.valueOf(defaultValue);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+/**
+ * Immutable snapshot of every registered {@link DebugKey}, with values kept in primitive arrays
+ * indexed by key id. Keys registered after the snapshot was taken, and every key in
+ * {@link #DEFAULTS}, resolve to their default value.
+ */
+public final class DebugSettings {
+
+    public static final DebugSettings DEFAULTS =
+            new DebugSettings(0, new int[0], new long[0], new boolean[0]);
+
+    /**
+     * Number of keys registered when the snapshot was taken.
+     */
+    final int keyCount;
+
+    private final int[] ints;
+    private final long[] longs;
+    private final boolean[] booleans;
+
+    /**
+     * Takes ownership of the arrays, which must not be modified afterwards.
+     */
+    DebugSettings(int keyCount, int[] ints, long[] longs, boolean[] booleans) {
+        this.keyCount = keyCount;
+        this.ints = ints;
+        this.longs = longs;
+        this.booleans = booleans;
+    }
+
+    public int get(DebugKey.IntKey key) {
+        return key.id < ints.length ? ints[key.id] : key.defaultValue;
+    }
+
+    public long get(DebugKey.LongKey key) {
+        return key.id < longs.length ? longs[key.id] : key.defaultValue;
+    }
+
+    public boolean get(DebugKey.BooleanKey key) {
+        return key.id < booleans.length ? booleans[key.id] : key.defaultValue;
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+/**
+ * Receives timings from the {@link DebugInjector} hot paths so the cost of the pattern can be
+ * measured on real screens. Callbacks arrive on the calling thread and must not block.
+ */
+public interface MetricsSink {
+
+    /**
+     * One {@link DebugInjector#overrideLocale} call and whether it changed the locale.
+     */
+    void onOverrideLocale(long durationNanos, boolean localeChanged);
+
+    /**
+     * Time spent pushing a new locale into the resources configuration.
+     */
+    void onConfigurationUpdate(long durationNanos);
+
+    /**
+     * Time the first {@link DebugInjector#getInstance} spent creating the injector.
+     */
+    void onFirstInstance(long durationNanos);
+
+    /**
+     * Time the first {@link DebugInjector#getInstance} waited for the settings still loading in
+     * the background, 0 if they had already loaded.
+     */
+    void onPreloadWait(long durationNanos);
+
+}
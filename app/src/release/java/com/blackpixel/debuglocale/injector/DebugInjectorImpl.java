@@ -38,4 +38,43 @@ public class DebugInjectorImpl extends DebugInjector {
         return false;
     }
 
+    @Override
+    public Context wrapBaseContext(Context base) {
+        return base;
+    }
+
+    @Override
+    public void setMetricsSink(MetricsSink metricsSink) {
+    }
+
+    @Override
+    public void setConfigurationOverrides(ConfigurationOverrides overrides) {
+    }
+
+    @Override
+    public ConfigurationOverrides getConfigurationOverrides() {
+        return ConfigurationOverrides.NONE;
+    }
+
+    @Override
+    public void traceBegin(String name) {
+    }
+
+    @Override
+    public void traceEnd(String name) {
+    }
+
+    @Override
+    public DebugSettings getSettings() {
+        return DebugSettings.DEFAULTS;
+    }
+
+    @Override
+    public void registerOverrideListener(Activity activity, OnOverrideChangedListener listener) {
+    }
+
+    @Override
+    public void unregisterOverrideListener(Activity activity) {
+    }
+
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale;
+
+import android.content.Context;
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.DateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Verify lookup, eviction and invalidation of cached date formats.
+ */
+public class DateFormatCacheTest {
+
+    private TimeZone originalTimeZone;
+
+    @Before
+    public void setUp() {
+        originalTimeZone = TimeZone.getDefault();
+        DateFormatCache.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(originalTimeZone);
+    }
+
+    @Test
+    public void returnsSameInstanceForSameKey() throws Exception {
+        DateFormat format = DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.FRENCH);
+
+        assertSame(format, DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                new Locale("fr")));
+        assertNotSame(format, DateFormatCache.getDateTimeInstance(DateFormat.SHORT, DateFormat.LONG,
+                Locale.FRENCH));
+        assertEquals(2, DateFormatCache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        DateFormat french = DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.FRENCH);
+        DateFormat german = DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.GERMAN);
+
+        for (int i = 0; i < DateFormatCache.MAX_SIZE - 1; i++) {
+            // keep french recently used while filling the cache
+            DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, Locale.FRENCH);
+            DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                    new Locale("x" + i));
+        }
+
+        assertEquals(DateFormatCache.MAX_SIZE, DateFormatCache.size());
+        assertSame(french, DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.FRENCH));
+        assertNotSame(german, DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.GERMAN));
+    }
+
+    @Test
+    public void followsTimeZoneChange() throws Exception {
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Paris"));
+        DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, Locale.FRENCH);
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        new TimeZoneChangedReceiver().onReceive(mock(Context.class), mock(Intent.class));
+        DateFormat format = DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.FRENCH);
+
+        assertEquals("Asia/Tokyo", format.getTimeZone().getID());
+    }
+
+    @Test
+    public void hitDoesNotAllocate() throws Exception {
+        DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, Locale.FRENCH);
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int lookups = 10000;
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < lookups; i++) {
+            DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, Locale.FRENCH);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // anything proportional to the number of lookups would be at least a byte per call
+        assertTrue("allocated " + allocated + " bytes", allocated < lookups);
+    }
+
+    @Test
+    public void invalidateDropsEverything() throws Exception {
+        DateFormat format = DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.FRENCH);
+
+        DateFormatCache.invalidate();
+
+        assertEquals(0, DateFormatCache.size());
+        assertNotSame(format, DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG,
+                Locale.FRENCH));
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Verify that concurrent callers share one injector bound to the application context, and that
+ * reading it once created never blocks.
+ */
+public class DebugInjectorTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+    private static final int READS = 100000;
+
+    private AppContext appContext;
+
+    @Before
+    public void setUp() {
+        DebugInjector.resetInstance();
+        appContext = new AppContext();
+    }
+
+    @After
+    public void tearDown() {
+        DebugInjector.resetInstance();
+    }
+
+    @Test
+    public void bindsApplicationContext() throws Exception {
+        CallerContext caller = new CallerContext(appContext);
+        DebugInjector debugInjector = DebugInjector.getInstance(caller);
+
+        assertNotNull(debugInjector);
+        assertSame(debugInjector, DebugInjector.getInstance(new CallerContext(appContext)));
+        // only asked once, while creating
+        assertEquals(1, caller.applicationContextCalls.get());
+    }
+
+    @Test
+    public void fallsBackWithoutApplicationContext() throws Exception {
+        assertNotNull(DebugInjector.getInstance(new CallerContext(null)));
+    }
+
+    @Test
+    public void initializeEagerly() throws Exception {
+        CallerContext caller = new CallerContext(appContext);
+        DebugInjector.initialize(caller);
+        DebugInjector.initialize(caller);
+
+        assertEquals(1, caller.applicationContextCalls.get());
+        assertSame(DebugInjector.getInstance(caller), DebugInjector.getInstance(appContext));
+        assertEquals(1, caller.applicationContextCalls.get());
+    }
+
+    @Test
+    public void concurrentFirstUseCreatesOneInstance() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            DebugInjector.resetInstance();
+            final CallerContext caller = new CallerContext(appContext);
+            final DebugInjector[] results = new DebugInjector[THREADS];
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                final int index = i;
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        awaitQuietly(start);
+                        results[index] = DebugInjector.getInstance(caller);
+                    }
+                });
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // the application context is only looked up by the thread that creates the injector
+            assertEquals("round " + round, 1, caller.applicationContextCalls.get());
+            for (DebugInjector result : results) {
+                assertSame("round " + round, results[0], result);
+            }
+        }
+    }
+
+    @Test
+    public void readPathDoesNotBlock() throws Exception {
+        final DebugInjector expected = DebugInjector.getInstance(appContext);
+        appContext.applicationContextCalls.set(0);
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        final long[] blocked = new long[THREADS];
+        final DebugInjector[] mismatches = new DebugInjector[THREADS];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+                    long id = Thread.currentThread().getId();
+                    long before = threadMXBean.getThreadInfo(id).getBlockedCount();
+                    for (int j = 0; j < READS; j++) {
+                        DebugInjector debugInjector = DebugInjector.getInstance(appContext);
+                        if (debugInjector != expected) {
+                            mismatches[index] = debugInjector;
+                        }
+                    }
+                    blocked[index] = threadMXBean.getThreadInfo(id).getBlockedCount() - before;
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < THREADS; i++) {
+            assertEquals("thread " + i, null, mismatches[i]);
+            assertEquals("thread " + i + " blocked on a monitor", 0, blocked[i]);
+        }
+        assertEquals(0, appContext.applicationContextCalls.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The application context, which is all the injector may keep.
+     */
+    private static class AppContext extends ContextWrapper {
+
+        final SharedPreferences sharedPrefs = mock(SharedPreferences.class);
+        final AtomicInteger applicationContextCalls = new AtomicInteger();
+
+        AppContext() {
+            super(null);
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            applicationContextCalls.incrementAndGet();
+            return this;
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            return sharedPrefs;
+        }
+
+        @Override
+        public String getPackageName() {
+            return "com.blackpixel.debuglocale";
+        }
+    }
+
+    /**
+     * An Activity or service context that must not be retained.
+     */
+    private static class CallerContext extends ContextWrapper {
+
+        private final Context applicationContext;
+        final AtomicInteger applicationContextCalls = new AtomicInteger();
+
+        CallerContext(Context applicationContext) {
+            super(null);
+            this.applicationContext = applicationContext;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            applicationContextCalls.incrementAndGet();
+            return applicationContext;
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            return mock(SharedPreferences.class);
+        }
+
+        @Override
+        public String getPackageName() {
+            return "com.blackpixel.debuglocale";
+        }
+    }
+}
@@ -22,9 +22,14 @@
 package com.blackpixel.debuglocale.injector;
 
 import android.app.Activity;
+import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Handler;
+import android.util.DisplayMetrics;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,19 +40,37 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -56,22 +79,42 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class DebugInjectorImplTest {
 
+    private static final DebugKey.IntKey TEST_INT_KEY =
+            DebugKey.intKey("test_int_setting", 7);
+    private static final DebugKey.LongKey TEST_LONG_KEY =
+            DebugKey.longKey("test_long_setting", 7L);
+    private static final DebugKey.BooleanKey TEST_BOOLEAN_KEY =
+            DebugKey.booleanKey("test_boolean_setting", true);
+
     @Mock
     Context mockContext;
 
+    @Mock
+    SharedPreferences mockSharedPrefs;
+
     private DebugInjectorImpl debugInjector;
 
     @Before
     public void setUp() {
+        when(mockContext.getSharedPreferences(anyString(), anyInt())).thenReturn(mockSharedPrefs);
+
         debugInjector = spy(new DebugInjectorImpl(mockContext));
-        debugInjector.sharedPrefs = mock(SharedPreferences.class);
 
         // is there a better way to override this internal method?
+        doReturn(true).when(debugInjector).applyConfiguration(any(Activity.class),
+                any(DebugInjectorImpl.LocaleSnapshot.class));
+
+        // the framework calls these tests go through, nothing else of it runs
         doAnswer(new Answer<Void>() {
             public Void answer(InvocationOnMock invocation) {
+                ((Configuration) invocation.getArguments()[0]).locale =
+                        (Locale) invocation.getArguments()[1];
                 return null;
             }
-        }).when(debugInjector).setLocale(any(Locale.class), any(Activity.class));
+        }).when(debugInjector).setConfigurationLocale(any(Configuration.class), any(Locale.class));
+        debugInjector.mainHandler = mock(Handler.class);
+        debugInjector.settingsWriter = new PreferenceWriteBehind(debugInjector.settingsStore,
+                mock(PreferenceWriteBehind.Scheduler.class));
     }
 
     @Test
@@ -87,12 +130,13 @@ public class DebugInjectorImplTest {
         Activity activity = mock(Activity.class);
         debugInjector.originalDefaultLocale = null;
 
-        when(debugInjector.sharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
             .thenReturn("");
 
         assertFalse(debugInjector.overrideLocale(activity));
 
-        verify(debugInjector, never()).setLocale(any(Locale.class), any(Activity.class));
+        verify(debugInjector, never()).applyConfiguration(any(Activity.class),
+                any(DebugInjectorImpl.LocaleSnapshot.class));
         assertEquals(Locale.getDefault(), debugInjector.originalDefaultLocale);
     }
 
@@ -104,16 +148,644 @@ public class DebugInjectorImplTest {
         String newLanguage = "fr";
         debugInjector.originalDefaultLocale = new Locale(originalLanguage);
 
-        when(debugInjector.sharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
                 .thenReturn(newLanguage);
 
         assertTrue(debugInjector.overrideLocale(activity));
 
-        ArgumentCaptor<Locale> captor = ArgumentCaptor.forClass(Locale.class);
+        ArgumentCaptor<DebugInjectorImpl.LocaleSnapshot> captor =
+                ArgumentCaptor.forClass(DebugInjectorImpl.LocaleSnapshot.class);
 
-        verify(debugInjector).setLocale(captor.capture(), any(Activity.class));
-        assertEquals(newLanguage, captor.getValue().getLanguage());
+        verify(debugInjector).applyConfiguration(any(Activity.class), captor.capture());
+        assertEquals(newLanguage, captor.getValue().locale.getLanguage());
         assertEquals(originalLanguage, debugInjector.originalDefaultLocale.getLanguage());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void overrideLocaleSteadyStateReusesSnapshot() throws Exception {
+        Activity activity = mock(Activity.class);
+        debugInjector.originalDefaultLocale = new Locale("en");
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+
+        debugInjector.overrideLocale(activity);
+        Locale resolved = debugInjector.localeSnapshot.locale;
+
+        debugInjector.overrideLocale(activity);
+        debugInjector.overrideLocale(activity);
+
+        verify(mockSharedPrefs, times(1)).getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString());
+        assertSame(resolved, debugInjector.localeSnapshot.locale);
+    }
+
+    @Test
+    public void preferenceChangeUpdatesSnapshot() throws Exception {
+        Activity activity = mock(Activity.class);
+        debugInjector.originalDefaultLocale = new Locale("en");
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+        debugInjector.overrideLocale(activity);
+        DebugInjectorImpl.LocaleSnapshot snapshot = debugInjector.localeSnapshot;
+
+        // unrelated keys and unchanged values keep the current snapshot
+        debugInjector.onSettingChanged(debugInjector.settingsStore, "unrelated");
+        debugInjector.onSettingChanged(debugInjector.settingsStore, DebugInjectorImpl.PREF_DEBUG_LOCALE);
+        assertSame(snapshot, debugInjector.localeSnapshot);
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("es");
+        debugInjector.onSettingChanged(debugInjector.settingsStore, DebugInjectorImpl.PREF_DEBUG_LOCALE);
+
+        assertEquals("es", debugInjector.localeSnapshot.locale.getLanguage());
+    }
+
+    @Test
+    public void lateChangeNotificationKeepsPendingWrite() throws Exception {
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+        debugInjector.updateSnapshot("es");
+        debugInjector.settingsWriter.putString(DebugInjectorImpl.PREF_DEBUG_LOCALE, "es", "");
+
+        // the notification for the earlier "fr" write arrives while "es" is still queued
+        debugInjector.onSettingChanged(debugInjector.settingsStore, DebugInjectorImpl.PREF_DEBUG_LOCALE);
+
+        assertEquals("es", debugInjector.localeSnapshot.locale.getLanguage());
+    }
+
+    @Test
+    public void overrideLocaleSteadyStateDoesNotAllocate() throws Exception {
+        // use plain instances, mocks and spies allocate on every intercepted call
+        DebugInjectorImpl plainInjector = new DebugInjectorImpl(mockContext);
+        Activity activity = new Activity() {
+            @Override
+            public Context getBaseContext() {
+                return null;
+            }
+        };
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("");
+
+        assertFalse(plainInjector.overrideLocale(activity));
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int resumes = 10000;
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < resumes; i++) {
+            plainInjector.overrideLocale(activity);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // anything proportional to the number of resumes would be at least a byte per call
+        assertTrue("allocated " + allocated + " bytes", allocated < resumes);
+    }
+
+    @Test
+    public void constructorUsesPreloadedSettings() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final AtomicInteger callerLoads = new AtomicInteger();
+        when(mockContext.getApplicationContext()).thenReturn(mockContext);
+        // a settings file that takes until loaded counts down to open
+        when(mockContext.getSharedPreferences(anyString(), anyInt())).thenAnswer(
+                new Answer<SharedPreferences>() {
+                    public SharedPreferences answer(InvocationOnMock invocation)
+                            throws InterruptedException {
+                        if (Thread.currentThread() == caller) {
+                            callerLoads.incrementAndGet();
+                        }
+                        loading.countDown();
+                        loaded.await();
+                        return mockSharedPrefs;
+                    }
+                });
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+
+        DebugInjectorImpl.preload(mockContext);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                loaded.countDown();
+            }
+        }).start();
+        DebugInjectorImpl preloadedInjector = new DebugInjectorImpl(mockContext);
+
+        // loaded by the preload thread, the constructor only waited for it
+        assertEquals(0, callerLoads.get());
+        assertTrue(preloadedInjector.preloadWaitNanos > 0);
+        assertEquals("fr", preloadedInjector.localeSnapshot.locale.getLanguage());
+
+        preloadedInjector = spy(preloadedInjector);
+        doReturn(true).when(preloadedInjector).applyConfiguration(any(Activity.class),
+                any(DebugInjectorImpl.LocaleSnapshot.class));
+        assertTrue(preloadedInjector.overrideLocale(mock(Activity.class)));
+        assertEquals(0, callerLoads.get());
+    }
+
+    @Test
+    public void localizedResourcesAreCachedPerLocale() throws Exception {
+        doAnswer(new Answer<Resources>() {
+            public Resources answer(InvocationOnMock invocation) {
+                return mock(Resources.class);
+            }
+        }).when(debugInjector).createLocalizedResources(any(Context.class), any(Locale.class));
+
+        Resources french = debugInjector.getLocalizedResources(mockContext, Locale.FRENCH);
+        Resources german = debugInjector.getLocalizedResources(mockContext, Locale.GERMAN);
+
+        assertSame(french, debugInjector.getLocalizedResources(mockContext, Locale.FRENCH));
+        assertSame(german, debugInjector.getLocalizedResources(mockContext, Locale.GERMAN));
+        verify(debugInjector, times(2)).createLocalizedResources(any(Context.class), any(Locale.class));
+    }
+
+    @Test
+    public void localizedResourcesOnlyDefineOverriddenFields() throws Exception {
+        Configuration appConfig = new Configuration();
+        appConfig.fontScale = 1.3f;
+        appConfig.uiMode = Configuration.UI_MODE_NIGHT_NO;
+        Resources appResources = mock(Resources.class);
+        when(appResources.getConfiguration()).thenReturn(appConfig);
+        when(mockContext.getResources()).thenReturn(appResources);
+        Context localizedContext = mock(Context.class);
+        when(mockContext.createConfigurationContext(any(Configuration.class)))
+                .thenReturn(localizedContext);
+
+        debugInjector.createLocalizedResources(mockContext, Locale.FRENCH);
+
+        ArgumentCaptor<Configuration> config = ArgumentCaptor.forClass(Configuration.class);
+        verify(mockContext).createConfigurationContext(config.capture());
+        assertEquals(Locale.FRENCH, config.getValue().locale);
+        // left for the framework to take from the application's current configuration
+        assertEquals(0f, config.getValue().fontScale, 0f);
+        assertEquals(0, config.getValue().uiMode);
+    }
+
+    @Test
+    public void localizedResourcesCacheIsBounded() throws Exception {
+        doAnswer(new Answer<Resources>() {
+            public Resources answer(InvocationOnMock invocation) {
+                return mock(Resources.class);
+            }
+        }).when(debugInjector).createLocalizedResources(any(Context.class), any(Locale.class));
+
+        Resources french = debugInjector.getLocalizedResources(mockContext, Locale.FRENCH);
+        for (int i = 0; i < DebugInjectorImpl.LOCALIZED_RESOURCES_CACHE_SIZE; i++) {
+            debugInjector.getLocalizedResources(mockContext, new Locale("x" + i));
+        }
+
+        assertEquals(DebugInjectorImpl.LOCALIZED_RESOURCES_CACHE_SIZE,
+                debugInjector.localizedResources.size());
+        assertNotSame(french, debugInjector.getLocalizedResources(mockContext, Locale.FRENCH));
+    }
+
+    @Test
+    public void overrideLocaleRecordsMetrics() throws Exception {
+        Activity activity = mock(Activity.class);
+        MetricsSink metricsSink = mock(MetricsSink.class);
+        debugInjector.setMetricsSink(metricsSink);
+        debugInjector.originalDefaultLocale = new Locale("en");
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+
+        debugInjector.overrideLocale(activity);
+
+        verify(metricsSink).onOverrideLocale(anyLong(), eq(true));
+        verify(metricsSink).onConfigurationUpdate(anyLong());
+    }
+
+    @Test
+    public void startupTimingsReachLaterSink() throws Exception {
+        MetricsSink metricsSink = mock(MetricsSink.class);
+        debugInjector.preloadWaitNanos = 5;
+
+        debugInjector.setMetricsSink(metricsSink);
+
+        verify(metricsSink).onFirstInstance(anyLong());
+        verify(metricsSink).onPreloadWait(5);
+    }
+
+    @Test
+    public void getSettingsReadsRegisteredKeys() throws Exception {
+        when(mockSharedPrefs.getString(eq(TEST_INT_KEY.name), anyString())).thenReturn("42");
+        when(mockSharedPrefs.getString(eq(TEST_LONG_KEY.name), anyString())).thenReturn("-1");
+        when(mockSharedPrefs.getString(eq(TEST_BOOLEAN_KEY.name), anyString())).thenReturn("false");
+
+        DebugSettings settings = debugInjector.getSettings();
+
+        assertEquals(42, settings.get(TEST_INT_KEY));
+        assertEquals(-1L, settings.get(TEST_LONG_KEY));
+        assertFalse(settings.get(TEST_BOOLEAN_KEY));
+        assertSame(settings, debugInjector.getSettings());
+    }
+
+    @Test
+    public void getSettingsFallsBackToDefaults() throws Exception {
+        when(mockSharedPrefs.getString(eq(TEST_INT_KEY.name), anyString())).thenReturn("not a number");
+
+        DebugSettings settings = debugInjector.getSettings();
+
+        assertEquals(TEST_INT_KEY.defaultValue, settings.get(TEST_INT_KEY));
+        assertEquals(TEST_LONG_KEY.defaultValue, settings.get(TEST_LONG_KEY));
+        assertTrue(settings.get(TEST_BOOLEAN_KEY));
+        assertEquals(7, DebugSettings.DEFAULTS.get(TEST_INT_KEY));
+    }
+
+    @Test
+    public void settingChangeReloadsSettings() throws Exception {
+        DebugSettings before = debugInjector.getSettings();
+
+        when(mockSharedPrefs.getString(eq(TEST_INT_KEY.name), anyString())).thenReturn("3");
+        debugInjector.onSettingChanged(mock(DebugSettingsStore.class), TEST_INT_KEY.name);
+
+        DebugSettings after = debugInjector.getSettings();
+        assertNotSame(before, after);
+        assertEquals(3, after.get(TEST_INT_KEY));
+    }
+
+    @Test
+    public void unrelatedSettingChangeKeepsSettings() throws Exception {
+        DebugSettings before = debugInjector.getSettings();
+
+        debugInjector.onSettingChanged(mock(DebugSettingsStore.class), "unregistered_setting");
+
+        assertSame(before, debugInjector.getSettings());
+    }
+
+    @Test
+    public void overrideLocaleSkipsActivityAtCurrentGeneration() throws Exception {
+        Activity activity = mock(Activity.class);
+        debugInjector.originalDefaultLocale = new Locale("en");
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+
+        assertTrue(debugInjector.overrideLocale(activity));
+        // applyConfiguration is stubbed, so without the generation check this would apply again
+        assertFalse(debugInjector.overrideLocale(activity));
+        verify(debugInjector, times(1)).applyConfiguration(eq(activity),
+                any(DebugInjectorImpl.LocaleSnapshot.class));
+
+        debugInjector.updateSnapshot("de");
+
+        assertTrue(debugInjector.overrideLocale(activity));
+        verify(debugInjector, times(2)).applyConfiguration(eq(activity),
+                any(DebugInjectorImpl.LocaleSnapshot.class));
+    }
+
+    @Test
+    public void overrideLocaleAppliesToEachActivity() throws Exception {
+        Activity first = mock(Activity.class);
+        Activity second = mock(Activity.class);
+        debugInjector.originalDefaultLocale = new Locale("en");
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+
+        assertTrue(debugInjector.overrideLocale(first));
+        assertTrue(debugInjector.overrideLocale(second));
+        assertEquals(debugInjector.localeSnapshot.generation,
+                debugInjector.appliedGenerations.get(second).intValue());
+
+        debugInjector.onActivityDestroyed(first);
+        assertFalse(debugInjector.appliedGenerations.containsKey(first));
+    }
+
+    @Test
+    public void updateSnapshotAdvancesGeneration() throws Exception {
+        int generation = debugInjector.updateSnapshot("fr").generation;
+
+        assertEquals(generation, debugInjector.updateSnapshot("fr").generation);
+        assertNotEquals(generation, debugInjector.updateSnapshot("de").generation);
+    }
+
+    @Test
+    public void registerLifecycleCallbacksOnApplication() throws Exception {
+        Application application = mock(Application.class);
+        Context context = mock(Context.class);
+        when(context.getApplicationContext()).thenReturn(application);
+
+        DebugInjectorImpl.registerLifecycleCallbacks(context);
+        DebugInjectorImpl.registerLifecycleCallbacks(context);
+
+        verify(application, times(1)).registerActivityLifecycleCallbacks(
+                any(OverrideLocaleLifecycleCallbacks.class));
+    }
+
+    @Test
+    public void overrideLocaleRecordsTraceSpans() throws Exception {
+        Activity activity = mock(Activity.class);
+        debugInjector.originalDefaultLocale = new Locale("en");
+        debugInjector.trace = new DebugTrace(16, DebugTrace.SYSTEM_CLOCK);
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("fr");
+
+        debugInjector.overrideLocale(activity);
+
+        StringWriter out = new StringWriter();
+        debugInjector.trace.writeJson(out, 1);
+        String json = out.toString();
+
+        assertTrue(json.contains("\"name\":\"" + DebugInjectorImpl.TRACE_OVERRIDE_LOCALE + "\""));
+        assertTrue(json.contains("\"name\":\"" + DebugInjectorImpl.TRACE_LOAD_OVERRIDE + "\""));
+        assertTrue(json.contains("\"name\":\"" + DebugInjectorImpl.TRACE_APPLY_CONFIGURATION + "\""));
+        assertEquals(6, debugInjector.trace.size());
+    }
+
+    @Test
+    public void setConfigurationOverridesPublishesSnapshot() throws Exception {
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("ar");
+        int generation = debugInjector.updateSnapshot("ar").generation;
+
+        ConfigurationOverrides overrides = new ConfigurationOverrides(
+                ConfigurationOverrides.LAYOUT_DIRECTION_RTL, 1.3f, Configuration.UI_MODE_NIGHT_YES);
+        debugInjector.setConfigurationOverrides(overrides);
+
+        DebugInjectorImpl.LocaleSnapshot snapshot = debugInjector.localeSnapshot;
+        assertEquals(overrides, snapshot.overrides);
+        assertEquals(overrides, debugInjector.getConfigurationOverrides());
+        assertEquals("ar", snapshot.localeCode);
+        assertEquals(generation + 1, snapshot.generation);
+
+        // setting the same values again keeps the snapshot
+        debugInjector.setConfigurationOverrides(overrides);
+        assertSame(snapshot, debugInjector.localeSnapshot);
+    }
+
+    @Test
+    public void overridesApplyWithoutLocaleChange() throws Exception {
+        Activity activity = mock(Activity.class);
+        debugInjector.originalDefaultLocale = Locale.getDefault();
+
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("");
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.FONT_SCALE_PERCENT.name), anyString()))
+                .thenReturn("150");
+
+        assertTrue(debugInjector.overrideLocale(activity));
+
+        ArgumentCaptor<DebugInjectorImpl.LocaleSnapshot> captor =
+                ArgumentCaptor.forClass(DebugInjectorImpl.LocaleSnapshot.class);
+        verify(debugInjector, times(1)).applyConfiguration(eq(activity), captor.capture());
+        assertEquals(1.5f, captor.getValue().overrides.fontScale, 0f);
+    }
+
+    @Test
+    public void diffComparesEachField() throws Exception {
+        Configuration current = new Configuration();
+        current.fontScale = 1f;
+        current.uiMode = Configuration.UI_MODE_NIGHT_NO;
+        current.screenLayout = Configuration.SCREENLAYOUT_LAYOUTDIR_LTR;
+
+        Configuration desired = new Configuration();
+        desired.fontScale = 1f;
+        desired.uiMode = Configuration.UI_MODE_NIGHT_NO;
+        desired.screenLayout = Configuration.SCREENLAYOUT_LAYOUTDIR_LTR;
+        assertEquals(0, DebugInjectorImpl.diff(current, desired));
+
+        desired.locale = Locale.FRENCH;
+        desired.fontScale = 1.3f;
+        desired.uiMode = Configuration.UI_MODE_NIGHT_YES;
+        desired.screenLayout = Configuration.SCREENLAYOUT_LAYOUTDIR_RTL;
+        assertEquals(DebugInjectorImpl.CHANGE_LOCALE | DebugInjectorImpl.CHANGE_FONT_SCALE
+                        | DebugInjectorImpl.CHANGE_NIGHT_MODE
+                        | DebugInjectorImpl.CHANGE_LAYOUT_DIRECTION,
+                DebugInjectorImpl.diff(current, desired));
+    }
+
+    @Test
+    public void buildConfigurationForcesAndRestoresOverrides() throws Exception {
+        debugInjector.originalFontScale = 1f;
+        debugInjector.originalNightMode = Configuration.UI_MODE_NIGHT_NO;
+
+        Configuration config = new Configuration();
+        config.fontScale = 1f;
+        config.uiMode = Configuration.UI_MODE_NIGHT_NO;
+        config.screenLayout = Configuration.SCREENLAYOUT_LAYOUTDIR_LTR;
+
+        debugInjector.buildConfiguration(config, Locale.ENGLISH, new ConfigurationOverrides(
+                ConfigurationOverrides.LAYOUT_DIRECTION_RTL, 2f, Configuration.UI_MODE_NIGHT_YES));
+
+        assertEquals(Configuration.SCREENLAYOUT_LAYOUTDIR_RTL,
+                config.screenLayout & Configuration.SCREENLAYOUT_LAYOUTDIR_MASK);
+        assertEquals(2f, config.fontScale, 0f);
+        assertEquals(Configuration.UI_MODE_NIGHT_YES, config.uiMode & Configuration.UI_MODE_NIGHT_MASK);
+
+        debugInjector.buildConfiguration(config, Locale.ENGLISH, ConfigurationOverrides.NONE);
+
+        assertEquals(1f, config.fontScale, 0f);
+        assertEquals(Configuration.UI_MODE_NIGHT_NO, config.uiMode & Configuration.UI_MODE_NIGHT_MASK);
+    }
+
+    @Test
+    public void applySettingsPublishesBatchInOneWrite() throws Exception {
+        SharedPreferences.Editor editor = mockEditor();
+        DebugInjectorImpl.OnSettingsAppliedListener listener =
+                mock(DebugInjectorImpl.OnSettingsAppliedListener.class);
+
+        Map<String, String> values = new HashMap<String, String>();
+        values.put(DebugInjectorImpl.PREF_DEBUG_LOCALE, "ar");
+        values.put(DebugInjectorImpl.LAYOUT_DIRECTION.name,
+                String.valueOf(ConfigurationOverrides.LAYOUT_DIRECTION_RTL));
+        DebugInjectorImpl.LocaleSnapshot snapshot =
+                debugInjector.applySettings(values, null, listener);
+
+        assertEquals("ar", snapshot.localeCode);
+        assertEquals(ConfigurationOverrides.LAYOUT_DIRECTION_RTL, snapshot.overrides.layoutDirection);
+        assertSame(snapshot, debugInjector.localeSnapshot);
+        verify(listener).onSettingsApplied(snapshot, true);
+        verify(editor, times(1)).apply();
+    }
+
+    @Test
+    public void applySettingsWaitsForResumedActivity() throws Exception {
+        mockEditor();
+        DebugInjectorImpl.OnSettingsAppliedListener listener =
+                mock(DebugInjectorImpl.OnSettingsAppliedListener.class);
+        Activity resumed = mock(Activity.class);
+
+        DebugInjectorImpl.LocaleSnapshot snapshot = debugInjector.applySettings(
+                Collections.singletonMap(DebugInjectorImpl.PREF_DEBUG_LOCALE, "fr"), resumed,
+                listener);
+
+        verify(resumed).recreate();
+        verifyZeroInteractions(listener);
+
+        // the recreated Activity resumes
+        debugInjector.overrideLocale(mock(Activity.class));
+        verify(listener).onSettingsApplied(snapshot, true);
+    }
+
+    @Test
+    public void cancelledSettingsAreNotReported() throws Exception {
+        mockEditor();
+        DebugInjectorImpl.OnSettingsAppliedListener listener =
+                mock(DebugInjectorImpl.OnSettingsAppliedListener.class);
+
+        debugInjector.applySettings(
+                Collections.singletonMap(DebugInjectorImpl.PREF_DEBUG_LOCALE, "fr"),
+                mock(Activity.class), listener);
+
+        assertTrue(debugInjector.cancelSettingsApplied(listener));
+        assertFalse(debugInjector.cancelSettingsApplied(listener));
+        debugInjector.overrideLocale(mock(Activity.class));
+        verifyZeroInteractions(listener);
+    }
+
+    @Test
+    public void applySettingsRejectsUnknownKeys() throws Exception {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put(DebugInjectorImpl.PREF_DEBUG_LOCALE, "fr");
+        values.put("no_such_setting", "1");
+
+        try {
+            debugInjector.applySettings(values, null,
+                    mock(DebugInjectorImpl.OnSettingsAppliedListener.class));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        verify(mockSharedPrefs, never()).edit();
+        assertNull(debugInjector.localeSnapshot);
+    }
+
+    /**
+     * Starts from the phone default and accepts writes.
+     */
+    private SharedPreferences.Editor mockEditor() {
+        when(mockSharedPrefs.getString(eq(DebugInjectorImpl.PREF_DEBUG_LOCALE), anyString()))
+                .thenReturn("");
+        SharedPreferences.Editor editor = mock(SharedPreferences.Editor.class);
+        when(mockSharedPrefs.edit()).thenReturn(editor);
+        when(editor.putString(anyString(), anyString())).thenReturn(editor);
+        when(editor.remove(anyString())).thenReturn(editor);
+        return editor;
+    }
+
+    @Test
+    public void overrideChangeRebindsRegisteredActivity() throws Exception {
+        mockEditor();
+        Activity activity = mock(Activity.class);
+        OnOverrideChangedListener listener = mock(OnOverrideChangedListener.class);
+        debugInjector.registerOverrideListener(activity, listener);
+        debugInjector.overrideLocale(activity);
+
+        DebugInjectorImpl.LocaleSnapshot snapshot = debugInjector.updateSnapshot("fr");
+        doReturn(true).when(debugInjector).rebindInPlace(activity, snapshot);
+        debugInjector.dispatchOverrideChanged();
+
+        verify(listener).onOverrideChanged(snapshot.locale, snapshot.overrides);
+        assertEquals(snapshot.generation, (int) debugInjector.appliedGenerations.get(activity));
+
+        // already current, the next resume has nothing to do
+        assertFalse(debugInjector.overrideLocale(activity));
+        verify(activity, never()).recreate();
+    }
+
+    @Test
+    public void overrideChangeWaitsForResumeWhenNotInPlace() throws Exception {
+        mockEditor();
+        Activity activity = mock(Activity.class);
+        OnOverrideChangedListener listener = mock(OnOverrideChangedListener.class);
+        debugInjector.registerOverrideListener(activity, listener);
+        debugInjector.overrideLocale(activity);
+        int appliedGeneration = debugInjector.appliedGenerations.get(activity);
+
+        DebugInjectorImpl.LocaleSnapshot snapshot = debugInjector.updateSnapshot("ar");
+        doReturn(false).when(debugInjector).rebindInPlace(activity, snapshot);
+        debugInjector.dispatchOverrideChanged();
+
+        verifyZeroInteractions(listener);
+        assertEquals(appliedGeneration, (int) debugInjector.appliedGenerations.get(activity));
+    }
+
+    @Test
+    public void unresumedActivityIsNotRebound() throws Exception {
+        mockEditor();
+        Activity activity = mock(Activity.class);
+        OnOverrideChangedListener listener = mock(OnOverrideChangedListener.class);
+        debugInjector.registerOverrideListener(activity, listener);
+
+        debugInjector.updateSnapshot("fr");
+        debugInjector.dispatchOverrideChanged();
+
+        verifyZeroInteractions(listener);
+        verify(debugInjector, never()).rebindInPlace(any(Activity.class),
+                any(DebugInjectorImpl.LocaleSnapshot.class));
+    }
+
+    @Test
+    public void rebindInPlaceUpdatesWrappedActivity() throws Exception {
+        Resources resources = mock(Resources.class);
+        when(resources.getConfiguration()).thenReturn(new Configuration());
+        debugInjector.localizedResources.put(Locale.ENGLISH, resources);
+        LocalizedContextWrapper wrapper = new LocalizedContextWrapper(mockContext,
+                Locale.ENGLISH, ConfigurationOverrides.NONE, resources);
+        Activity activity = mock(Activity.class);
+        when(activity.getBaseContext()).thenReturn(wrapper);
+        when(activity.getResources()).thenReturn(resources);
+
+        DebugInjectorImpl.LocaleSnapshot snapshot = new DebugInjectorImpl.LocaleSnapshot(
+                "fr", Locale.FRENCH, ConfigurationOverrides.NONE, 1);
+        assertTrue(debugInjector.rebindInPlace(activity, snapshot));
+
+        assertSame(Locale.FRENCH, wrapper.locale);
+        assertFalse(debugInjector.localizedResources.containsValue(resources));
+    }
+
+    @Test
+    public void rebindInPlaceRefusesLayoutDirectionChange() throws Exception {
+        Resources resources = mock(Resources.class);
+        when(resources.getConfiguration()).thenReturn(new Configuration());
+        Activity activity = mock(Activity.class);
+        when(activity.getResources()).thenReturn(resources);
+
+        DebugInjectorImpl.LocaleSnapshot snapshot = new DebugInjectorImpl.LocaleSnapshot(
+                "en", Locale.ENGLISH, new ConfigurationOverrides(
+                ConfigurationOverrides.LAYOUT_DIRECTION_RTL, 0f, 0), 1);
+        assertFalse(debugInjector.rebindInPlace(activity, snapshot));
+        verify(resources, never()).updateConfiguration(any(Configuration.class),
+                any(DisplayMetrics.class));
+    }
+
+    @Test
+    public void applySettingsRebindsRegisteredResumedActivity() throws Exception {
+        mockEditor();
+        Activity resumed = mock(Activity.class);
+        debugInjector.registerOverrideListener(resumed, mock(OnOverrideChangedListener.class));
+        debugInjector.overrideLocale(resumed);
+        doReturn(true).when(debugInjector).rebindInPlace(any(Activity.class),
+                any(DebugInjectorImpl.LocaleSnapshot.class));
+        DebugInjectorImpl.OnSettingsAppliedListener listener =
+                mock(DebugInjectorImpl.OnSettingsAppliedListener.class);
+
+        DebugInjectorImpl.LocaleSnapshot snapshot = debugInjector.applySettings(
+                Collections.singletonMap(DebugInjectorImpl.PREF_DEBUG_LOCALE, "fr"), resumed,
+                listener);
+
+        verify(listener).onSettingsApplied(snapshot, true);
+        verify(resumed, never()).recreate();
+    }
+
+    @Test
+    public void destroyedActivityIsUnregistered() throws Exception {
+        Activity activity = mock(Activity.class);
+        debugInjector.registerOverrideListener(activity, mock(OnOverrideChangedListener.class));
+        debugInjector.onActivityDestroyed(activity);
+        assertTrue(debugInjector.overrideListeners.isEmpty());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DebugTraceTest {
+
+    private FakeClock clock;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+    }
+
+    @Test
+    public void capacityIsRoundedToPowerOfTwo() throws Exception {
+        assertEquals(1, new DebugTrace(0, clock).capacity());
+        assertEquals(4, new DebugTrace(4, clock).capacity());
+        assertEquals(8, new DebugTrace(5, clock).capacity());
+    }
+
+    @Test
+    public void writesChromeTraceEvents() throws Exception {
+        DebugTrace trace = new DebugTrace(8, clock);
+        long tid = Thread.currentThread().getId();
+
+        clock.nanos = 1000;
+        trace.begin("setLocale");
+        clock.nanos = 2500;
+        trace.end("setLocale");
+
+        StringWriter out = new StringWriter();
+        trace.writeJson(out, 42);
+
+        assertEquals("{\"traceEvents\":["
+                + "\n{\"name\":\"setLocale\",\"ph\":\"B\",\"ts\":1.000,\"pid\":42,\"tid\":" + tid + "},"
+                + "\n{\"name\":\"setLocale\",\"ph\":\"E\",\"ts\":2.500,\"pid\":42,\"tid\":" + tid + "}"
+                + "\n],\"displayTimeUnit\":\"ms\"}\n", out.toString());
+    }
+
+    @Test
+    public void oldestEventsAreOverwritten() throws Exception {
+        DebugTrace trace = new DebugTrace(2, clock);
+
+        clock.nanos = 1000;
+        trace.begin("first");
+        clock.nanos = 2000;
+        trace.begin("second");
+        clock.nanos = 3000;
+        trace.end("second");
+
+        StringWriter out = new StringWriter();
+        trace.writeJson(out, 1);
+
+        assertEquals(2, trace.size());
+        String json = out.toString();
+        assertFalse(json.contains("first"));
+        assertTrue(json.contains("{\"name\":\"second\",\"ph\":\"B\",\"ts\":2.000,"));
+        assertTrue(json.contains("{\"name\":\"second\",\"ph\":\"E\",\"ts\":3.000,"));
+    }
+
+    @Test
+    public void escapesNames() throws Exception {
+        DebugTrace trace = new DebugTrace(1, clock);
+        trace.begin("a\"b\\c");
+
+        StringWriter out = new StringWriter();
+        trace.writeJson(out, 1);
+
+        assertTrue(out.toString().contains("\"name\":\"a\\\"b\\\\c\""));
+    }
+
+    private static class FakeClock implements DebugTrace.Clock {
+        long nanos;
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verify bucket boundaries of the fixed-bucket histogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundaries() throws Exception {
+        assertEquals(0, LatencyHistogram.bucketFor(0));
+        assertEquals(0, LatencyHistogram.bucketFor(1023));
+        assertEquals(1, LatencyHistogram.bucketFor(1024));
+        assertEquals(1, LatencyHistogram.bucketFor(2047));
+        assertEquals(2, LatencyHistogram.bucketFor(2048));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT - 1; bucket++) {
+            long limit = LatencyHistogram.getBucketLimitNanos(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketFor(limit - 1));
+            assertEquals(bucket + 1, LatencyHistogram.bucketFor(limit));
+        }
+    }
+
+    @Test
+    public void recordCounts() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(500);
+        histogram.record(600);
+        histogram.record(5000);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(2, histogram.getBucketCount(0));
+        assertEquals(1, histogram.getBucketCount(LatencyHistogram.bucketFor(5000)));
+    }
+
+}
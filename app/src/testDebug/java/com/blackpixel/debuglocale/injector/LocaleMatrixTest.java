@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.widget.TextView;
+
+import com.blackpixel.debuglocale.DateFormatCache;
+import com.blackpixel.debuglocale.MainActivity;
+import com.blackpixel.debuglocale.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Builds MainActivity once for every locale in the catalog, with the override set the way the
+ * settings screen sets it, and checks what its views show against the framework's resolution
+ * of the same resources.
+ *
+ * Robolectric serves the merged debug resources, found through the android.manifest,
+ * android.resources and android.assets system properties set by the build. The catalog is split
+ * across the {@link #SHARDS} nested classes, which the build runs in parallel test JVMs. Every
+ * locale is a test case of its own, so the test report lists how long each one took.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 23)
+public abstract class LocaleMatrixTest {
+
+    static final int SHARDS = 4;
+
+    // the catalog's defaultLanguage, its strings live in the unqualified values folder
+    private static final String DEFAULT_LANGUAGE = "en";
+
+    // en-XA and ar-XB, generated by generateDebugPseudoLocales
+    private static final List<String> PSEUDO_REGIONS = Arrays.asList("XA", "XB");
+
+    private final String code;
+    private final int index;
+
+    LocaleMatrixTest(String code, int index) {
+        this.code = code;
+        this.index = index;
+    }
+
+    /**
+     * Every {@link #SHARDS}th catalog entry, starting at shard.
+     */
+    static List<Object[]> catalog(int shard) {
+        List<Object[]> parameters = new ArrayList<Object[]>();
+        for (int i = shard; i < LocaleCatalog.CODES.length; i += SHARDS) {
+            parameters.add(new Object[]{LocaleCatalog.CODES[i], i});
+        }
+        return parameters;
+    }
+
+    /**
+     * Robolectric gives every case a new Application but keeps static state for the whole
+     * sandbox, so the injector bound to the previous case's Application and the caches it
+     * filled are dropped first.
+     */
+    @Before
+    public void setUp() {
+        DebugInjector.resetInstance();
+        DateFormatCache.invalidate();
+        LocaleTable.clear();
+    }
+
+    @Test
+    public void mainActivityShowsLocale() throws Exception {
+        Context application = RuntimeEnvironment.application;
+        DebugInjectorImpl.setOverrideLocale(application, code);
+
+        MainActivity activity = Robolectric.setupActivity(MainActivity.class);
+        TextView helloWorld = (TextView) activity.findViewById(R.id.main_hello_world_tv);
+        TextView dateTime = (TextView) activity.findViewById(R.id.main_date_time_tv);
+
+        Locale locale = index == 0
+                ? application.getResources().getConfiguration().locale
+                : LocaleCatalog.LOCALES[index];
+        assertEquals(locale, activity.getResources().getConfiguration().locale);
+        assertTrue(helloWorld.isShown());
+        assertTrue(dateTime.isShown());
+
+        String expected = localizedResources(application, locale).getString(R.string.hello_world);
+        assertEquals(expected, helloWorld.getText().toString());
+        // the pseudo-locales are generated from the default strings, whatever their language
+        boolean pseudoLocale = PSEUDO_REGIONS.contains(locale.getCountry());
+        if (index != 0 && (pseudoLocale || !locale.getLanguage().equals(DEFAULT_LANGUAGE))) {
+            assertFalse("hello_world is not translated",
+                    expected.equals(application.getString(R.string.hello_world)));
+        }
+
+        // only parses if it was formatted for the locale
+        String date = dateTime.getText().toString();
+        try {
+            DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, locale).parse(date);
+        } catch (ParseException e) {
+            fail("date is not localized: " + date);
+        }
+    }
+
+    /**
+     * The application's resources for the locale, resolved by the framework without the
+     * injector.
+     */
+    private static Resources localizedResources(Context context, Locale locale) {
+        Configuration configuration = new Configuration(context.getResources().getConfiguration());
+        configuration.setLocale(locale);
+        return context.createConfigurationContext(configuration).getResources();
+    }
+
+    public static class Shard0 extends LocaleMatrixTest {
+
+        public Shard0(String code, int index) {
+            super(code, index);
+        }
+
+        @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+        public static List<Object[]> catalog() {
+            return catalog(0);
+        }
+
+    }
+
+    public static class Shard1 extends LocaleMatrixTest {
+
+        public Shard1(String code, int index) {
+            super(code, index);
+        }
+
+        @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+        public static List<Object[]> catalog() {
+            return catalog(1);
+        }
+
+    }
+
+    public static class Shard2 extends LocaleMatrixTest {
+
+        public Shard2(String code, int index) {
+            super(code, index);
+        }
+
+        @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+        public static List<Object[]> catalog() {
+            return catalog(2);
+        }
+
+    }
+
+    public static class Shard3 extends LocaleMatrixTest {
+
+        public Shard3(String code, int index) {
+            super(code, index);
+        }
+
+        @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+        public static List<Object[]> catalog() {
+            return catalog(3);
+        }
+
+    }
+
+}
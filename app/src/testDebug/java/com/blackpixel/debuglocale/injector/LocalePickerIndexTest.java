@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LocalePickerIndexTest {
+
+    private LocalePickerIndex index;
+    private int[] results;
+
+    @Before
+    public void setUp() {
+        index = new LocalePickerIndex(
+                new String[]{"", "fr", "fr-CA", "zh-Hant-TW", "en-AU"},
+                new String[]{"Phone Default", "French", "French (Canada)",
+                        "Chinese (Traditional, Taiwan)", "English (Australia)"});
+        results = new int[index.size()];
+    }
+
+    @Test
+    public void emptyQueryMatchesEverything() throws Exception {
+        assertEquals(5, index.filter("  ", null, 0, results));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, results);
+    }
+
+    @Test
+    public void prefixMatchesTagsAndLabelWords() throws Exception {
+        assertMatches("fr", 1, 2);
+        assertMatches("Tai", 3);
+        assertMatches("zh-h", 3);
+    }
+
+    @Test
+    public void substringMatchesFollowPrefixMatches() throws Exception {
+        // "ch" starts "Chinese" and is inside both "French" entries
+        assertMatches("ch", 3, 1, 2);
+    }
+
+    @Test
+    public void narrowingMatchesFullSearch() throws Exception {
+        int count = index.filter("fr", null, 0, results);
+        int[] narrowed = new int[index.size()];
+        int narrowedCount = index.filter("fr-c", results, count, narrowed);
+
+        int[] full = new int[index.size()];
+        int fullCount = index.filter("fr-c", null, 0, full);
+
+        assertEquals(fullCount, narrowedCount);
+        assertArrayEquals(Arrays.copyOf(full, fullCount), Arrays.copyOf(narrowed, narrowedCount));
+    }
+
+    @Test
+    public void availableCodesStartWithCatalog() throws Exception {
+        String[] codes = LocalePickerIndex.availableCodes();
+
+        assertArrayEquals(LocaleCatalog.CODES,
+                Arrays.copyOf(codes, LocaleCatalog.CODES.length));
+        assertTrue(codes.length > LocaleCatalog.CODES.length);
+        assertEquals(codes.length, new java.util.HashSet<String>(Arrays.asList(codes)).size());
+    }
+
+    @Test
+    public void indexOfFindsEachCode() throws Exception {
+        assertEquals(0, index.indexOf(""));
+        assertEquals(3, index.indexOf("zh-Hant-TW"));
+        assertEquals(-1, index.indexOf("zh-hant-tw"));
+        assertEquals(-1, index.indexOf("de"));
+    }
+
+    @Test
+    public void standInsUseCatalogLabels() throws Exception {
+        LocalePickerIndex catalog = LocalePickerIndex.catalogOnly();
+        LocalePickerIndex withoutDisplayNames = LocalePickerIndex.withoutDisplayNames();
+
+        assertEquals(LocaleCatalog.CODES.length, catalog.size());
+        for (int i = 0; i < LocaleCatalog.CODES.length; i++) {
+            String code = LocaleCatalog.CODES[i];
+            assertEquals(LocaleCatalog.LABELS[i], catalog.labelAt(catalog.indexOf(code)));
+            assertEquals(LocaleCatalog.LABELS[i],
+                    withoutDisplayNames.labelAt(withoutDisplayNames.indexOf(code)));
+        }
+        int other = LocaleCatalog.CODES.length;
+        assertEquals(withoutDisplayNames.codeAt(other), withoutDisplayNames.labelAt(other));
+    }
+
+    @Test
+    public void availableIndexIsCached() throws Exception {
+        LocalePickerIndex available = LocalePickerIndex.loadAvailable();
+
+        assertSame(available, LocalePickerIndex.getAvailable());
+        assertSame(available, LocalePickerIndex.loadAvailable());
+        assertEquals("Phone Default", available.labelAt(available.indexOf("")));
+    }
+
+    private void assertMatches(String query, int... expected) {
+        int count = index.filter(query, null, 0, results);
+        assertArrayEquals(query, expected, Arrays.copyOf(results, count));
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LocaleTableTest {
+
+    @Test
+    public void parsesScriptAndRegion() throws Exception {
+        Locale locale = LocaleTable.forTag("zh-Hant-TW");
+
+        assertEquals("zh", locale.getLanguage());
+        assertEquals("Hant", locale.getScript());
+        assertEquals("TW", locale.getCountry());
+    }
+
+    @Test
+    public void parsesExtensions() throws Exception {
+        Locale locale = LocaleTable.forTag("ar-EG-u-nu-arab");
+
+        assertEquals("ar", locale.getLanguage());
+        assertEquals("EG", locale.getCountry());
+        assertEquals("arab", locale.getUnicodeLocaleType("nu"));
+    }
+
+    @Test
+    public void equalTagsAreIdentical() throws Exception {
+        Locale locale = LocaleTable.forTag("en-XA");
+
+        assertSame(locale, LocaleTable.forTag("en-XA"));
+        assertSame(locale, LocaleTable.forTag("EN-xa"));
+        assertSame(locale, LocaleTable.forTag("en_XA"));
+    }
+
+    @Test
+    public void catalogLocalesAreInterned() throws Exception {
+        int index = LocaleCatalog.indexOf("fr");
+
+        assertSame(LocaleCatalog.LOCALES[index], LocaleTable.forTag("fr"));
+    }
+
+    @Test
+    public void malformedCodeIsTakenAsLanguage() throws Exception {
+        assertEquals(new Locale("not a tag"), LocaleTable.parse("not a tag"));
+    }
+
+    @Test
+    public void malformedCodesAreNotMerged() throws Exception {
+        Locale locale = LocaleTable.forTag("not a tag");
+
+        assertEquals(new Locale("not a tag"), locale);
+        assertSame(locale, LocaleTable.forTag("not a tag"));
+        assertEquals(new Locale("12"), LocaleTable.forTag("12"));
+    }
+
+}
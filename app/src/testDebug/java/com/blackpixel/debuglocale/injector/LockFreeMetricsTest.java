@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify the counters and JSON export of the default metrics sink.
+ */
+public class LockFreeMetricsTest {
+
+    @Test
+    public void writesJson() throws Exception {
+        LockFreeMetrics metrics = new LockFreeMetrics();
+        metrics.onFirstInstance(42);
+        metrics.onOverrideLocale(100, true);
+        metrics.onOverrideLocale(5000, false);
+
+        StringWriter out = new StringWriter();
+        metrics.writeJson(out);
+        String json = out.toString();
+
+        assertTrue(json, json.startsWith("{\"firstInstanceNanos\":42,\"preloadWaitNanos\":-1,"
+                + "\"localeChanges\":1,"));
+        assertTrue(json, json.contains("\"overrideLocale\":[1,0,0,1,0,"));
+        assertTrue(json, json.contains("\"bucketLimitsNanos\":[1024,2048,"));
+    }
+
+    @Test
+    public void countsLocaleChanges() throws Exception {
+        LockFreeMetrics metrics = new LockFreeMetrics();
+
+        metrics.onOverrideLocale(100, false);
+        metrics.onOverrideLocale(100, true);
+        metrics.onFirstInstance(42);
+        metrics.onFirstInstance(43);
+
+        assertEquals(2, metrics.getOverrideLocaleCount());
+        assertEquals(1, metrics.getLocaleChangeCount());
+        assertEquals(42, metrics.getFirstInstanceNanos());
+    }
+
+}
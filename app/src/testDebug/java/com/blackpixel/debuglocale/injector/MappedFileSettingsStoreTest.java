@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verify persistence, compaction and crash consistency of the memory-mapped settings log.
+ */
+public class MappedFileSettingsStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(temporaryFolder.getRoot(), "settings.log");
+    }
+
+    @Test
+    public void valuesSurviveReopen() throws Exception {
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+        store.putStrings(Collections.singletonMap("locale", "fr"));
+        store.putStrings(Collections.singletonMap("theme", "dark"));
+        store.putStrings(Collections.singletonMap("locale", "es"));
+        store.putStrings(Collections.<String, String>singletonMap("theme", null));
+
+        MappedFileSettingsStore reopened = new MappedFileSettingsStore(file);
+
+        assertEquals("es", reopened.getString("locale", ""));
+        assertNull(reopened.getString("theme", null));
+    }
+
+    @Test
+    public void writesAppendOnlyTheChange() throws Exception {
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+        store.putStrings(Collections.singletonMap("locale", "fr"));
+        int afterFirst = store.getWritePosition();
+        store.putStrings(Collections.singletonMap("locale", "es"));
+
+        assertEquals(afterFirst - MappedFileSettingsStore.HEADER_SIZE,
+                store.getWritePosition() - afterFirst);
+    }
+
+    @Test
+    public void compactsWhenFull() throws Exception {
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+        for (int i = 0; i < 1000; i++) {
+            store.putStrings(Collections.singletonMap("locale", "locale-" + i));
+        }
+
+        assertEquals(MappedFileSettingsStore.INITIAL_CAPACITY, store.getCapacity());
+        assertTrue(file.length() <= MappedFileSettingsStore.INITIAL_CAPACITY);
+        assertEquals("locale-999", new MappedFileSettingsStore(file).getString("locale", ""));
+    }
+
+    @Test
+    public void failedCompactionKeepsPreviousValues() throws Exception {
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+        store.putStrings(Collections.singletonMap("locale", "fr"));
+
+        // the compaction file cannot be created
+        assertTrue(new File(file.getPath() + ".compact").mkdir());
+        char[] large = new char[MappedFileSettingsStore.INITIAL_CAPACITY];
+        Arrays.fill(large, 'x');
+        try {
+            store.putStrings(Collections.singletonMap("locale", new String(large)));
+            fail("compaction did not fail");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals("fr", store.getString("locale", ""));
+        assertEquals("fr", new MappedFileSettingsStore(file).getString("locale", ""));
+    }
+
+    @Test
+    public void tornRecordIsDropped() throws Exception {
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+        store.putStrings(Collections.singletonMap("locale", "fr"));
+        int validEnd = store.getWritePosition();
+
+        // a crash halfway through the next append: header written, payload missing
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(validEnd);
+        raf.writeInt(64);
+        raf.writeInt(0x12345678);
+        raf.writeShort(6);
+        raf.close();
+
+        MappedFileSettingsStore reopened = new MappedFileSettingsStore(file);
+        assertEquals("fr", reopened.getString("locale", ""));
+        assertEquals(validEnd, reopened.getWritePosition());
+
+        // appending over the cleared tail must not resurrect the torn bytes
+        reopened.putStrings(Collections.singletonMap("a", "b"));
+        MappedFileSettingsStore again = new MappedFileSettingsStore(file);
+        assertEquals("b", again.getString("a", ""));
+        assertEquals(reopened.getWritePosition(), again.getWritePosition());
+    }
+
+    @Test
+    public void corruptedBatchIsDroppedAsAWhole() throws Exception {
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+        store.putStrings(Collections.singletonMap("locale", "fr"));
+        int batchStart = store.getWritePosition();
+
+        Map<String, String> batch = new HashMap<String, String>();
+        batch.put("locale", "es");
+        batch.put("theme", "dark");
+        store.putStrings(batch);
+
+        // flip a payload byte of the last batch
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        int offset = batchStart + MappedFileSettingsStore.RECORD_HEADER_SIZE + 6;
+        raf.seek(offset);
+        int original = raf.read();
+        raf.seek(offset);
+        raf.write(original ^ 0xff);
+        raf.close();
+
+        MappedFileSettingsStore reopened = new MappedFileSettingsStore(file);
+        assertEquals("fr", reopened.getString("locale", ""));
+        assertNull(reopened.getString("theme", null));
+    }
+
+    @Test
+    public void leftoverCompactionFileIsIgnored() throws Exception {
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+        store.putStrings(Collections.singletonMap("locale", "fr"));
+
+        // a crash during compaction, before the rename
+        RandomAccessFile raf = new RandomAccessFile(file.getPath() + ".compact", "rw");
+        raf.writeInt(MappedFileSettingsStore.MAGIC);
+        raf.close();
+
+        assertEquals("fr", new MappedFileSettingsStore(file).getString("locale", ""));
+    }
+
+    @Test
+    public void unrecognizedFileStartsEmpty() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeBytes("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>");
+        raf.close();
+
+        MappedFileSettingsStore store = new MappedFileSettingsStore(file);
+
+        assertNull(store.getString("locale", null));
+        store.putStrings(Collections.singletonMap("locale", "fr"));
+        assertEquals("fr", new MappedFileSettingsStore(file).getString("locale", ""));
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale.injector;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Byte budgets for {@link DebugInjectorImpl#overrideLocale(Activity)} once warmed up, called
+ * directly or from {@link OverrideLocaleLifecycleCallbacks}, measured
+ * with the JVM's per-thread allocation counter. Everything here is a plain fake, mocks and spies
+ * allocate on every intercepted call.
+ *
+ * The preferences fail the test if the resume path touches them at all.
+ */
+public class OverrideLocaleBudgetTest {
+
+    /**
+     * A resume while the override is unchanged returns before touching anything.
+     */
+    private static final long UNCHANGED_BUDGET_BYTES = 0;
+
+    /**
+     * The first resume after a change, on average: the desired Configuration, a couple of hundred
+     * bytes with all of the framework's fields, and the boxed generation. Nothing that grows with
+     * the number of settings or resumes fits.
+     */
+    private static final long CHANGED_BUDGET_BYTES = 512;
+
+    private static final int WARMUP_RESUMES = 20000;
+    private static final int MEASURED_RESUMES = 10000;
+
+    private Locale originalDefaultLocale;
+    private com.sun.management.ThreadMXBean threadBean;
+    private long threadId;
+
+    private StrictSharedPreferences sharedPrefs;
+    private FakeContext context;
+    private FakeActivity activity;
+    private DebugInjectorImpl debugInjector;
+
+    @Before
+    public void setUp() {
+        originalDefaultLocale = Locale.getDefault();
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadId = Thread.currentThread().getId();
+
+        sharedPrefs = new StrictSharedPreferences();
+        context = new FakeContext(sharedPrefs);
+        activity = new FakeActivity(context);
+        debugInjector = new DebugInjectorImpl(context) {
+            @Override
+            void setConfigurationLocale(Configuration config, Locale locale) {
+                // Configuration.setLocale() has no implementation in unit tests
+                config.locale = locale;
+            }
+        };
+
+        // cold start, the only resume allowed to load the settings
+        debugInjector.overrideLocale(activity);
+        sharedPrefs.detectAccessOn(Thread.currentThread());
+    }
+
+    @After
+    public void tearDown() {
+        DebugInjector.resetInstance();
+        sharedPrefs.permitAll();
+        Locale.setDefault(originalDefaultLocale);
+    }
+
+    @Test
+    public void unchangedOverrideStaysWithinBudget() throws Exception {
+        for (int i = 0; i < WARMUP_RESUMES; i++) {
+            assertFalse(debugInjector.overrideLocale(activity));
+        }
+
+        long overhead = measurementOverhead();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RESUMES; i++) {
+            debugInjector.overrideLocale(activity);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertTrue("allocated " + allocated + " bytes in " + MEASURED_RESUMES + " resumes",
+                allocated <= UNCHANGED_BUDGET_BYTES * MEASURED_RESUMES);
+    }
+
+    @Test
+    public void unchangedOverrideFromCallbacksStaysWithinBudget() throws Exception {
+        // the callbacks reach the injector through getInstance(), cold start it there as well
+        sharedPrefs.permitAll();
+        DebugInjector.resetInstance();
+        DebugInjector.getInstance(context).overrideLocale(activity);
+        sharedPrefs.detectAccessOn(Thread.currentThread());
+
+        OverrideLocaleLifecycleCallbacks callbacks = new OverrideLocaleLifecycleCallbacks();
+        for (int i = 0; i < WARMUP_RESUMES; i++) {
+            callbacks.onActivityResumed(activity);
+            callbacks.onActivityPaused(activity);
+        }
+
+        long overhead = measurementOverhead();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RESUMES; i++) {
+            callbacks.onActivityResumed(activity);
+            callbacks.onActivityPaused(activity);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertTrue("allocated " + allocated + " bytes in " + MEASURED_RESUMES + " resumes",
+                allocated <= UNCHANGED_BUDGET_BYTES * MEASURED_RESUMES);
+    }
+
+    @Test
+    public void changedOverrideStaysWithinBudget() throws Exception {
+        for (int i = 0; i < WARMUP_RESUMES; i++) {
+            changeOverride(i);
+            assertTrue(debugInjector.overrideLocale(activity));
+        }
+
+        long overhead = measurementOverhead();
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_RESUMES; i++) {
+            // the change itself is the settings screen's work, only the resume is measured
+            changeOverride(i);
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            debugInjector.overrideLocale(activity);
+            allocated += threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+        }
+
+        // the JVM can charge a retired TLAB to whichever call was running, so single resumes
+        // are not comparable, their total is
+        assertTrue("allocated " + allocated + " bytes in " + MEASURED_RESUMES + " resumes",
+                allocated <= CHANGED_BUDGET_BYTES * MEASURED_RESUMES);
+        assertEquals(MEASURED_RESUMES + WARMUP_RESUMES, activity.resources.updates);
+    }
+
+    @Test
+    public void resumePathDoesNotTouchPreferences() throws Exception {
+        // would throw from StrictSharedPreferences
+        for (int i = 0; i < 10; i++) {
+            changeOverride(i);
+            debugInjector.overrideLocale(activity);
+            debugInjector.overrideLocale(activity);
+        }
+    }
+
+    @Test(expected = AssertionError.class)
+    public void preferenceAccessIsDetected() throws Exception {
+        sharedPrefs.getString(DebugInjectorImpl.PREF_DEBUG_LOCALE, "");
+    }
+
+    /**
+     * Switches between two overrides the way the settings screen's write reaches the injector,
+     * with strict detection lifted for the write itself.
+     */
+    private void changeOverride(int i) {
+        sharedPrefs.permitAll();
+        sharedPrefs.edit()
+                .putString(DebugInjectorImpl.PREF_DEBUG_LOCALE, i % 2 == 0 ? "fr" : "es")
+                .apply();
+        sharedPrefs.detectAccessOn(Thread.currentThread());
+    }
+
+    /**
+     * Bytes reading the counter twice allocates by itself.
+     */
+    private long measurementOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            overhead = Math.min(overhead, threadBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return overhead;
+    }
+
+    private static class FakeContext extends ContextWrapper {
+        private final SharedPreferences sharedPrefs;
+
+        FakeContext(SharedPreferences sharedPrefs) {
+            super(null);
+            this.sharedPrefs = sharedPrefs;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            return sharedPrefs;
+        }
+
+        @Override
+        public String getPackageName() {
+            return "com.blackpixel.debuglocale.debug";
+        }
+    }
+
+    /**
+     * Keeps its own configuration, which updateConfiguration() replaces field by field.
+     */
+    private static class FakeResources extends Resources {
+        final Configuration configuration = new Configuration();
+        int updates;
+
+        FakeResources() {
+            super(null, null, null);
+            configuration.fontScale = 1f;
+        }
+
+        @Override
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public void updateConfiguration(Configuration config, DisplayMetrics metrics) {
+            configuration.locale = config.locale;
+            configuration.fontScale = config.fontScale;
+            configuration.uiMode = config.uiMode;
+            configuration.screenLayout = config.screenLayout;
+            updates++;
+        }
+    }
+
+    private static class FakeActivity extends Activity {
+        final FakeResources resources = new FakeResources();
+        private final Context base;
+
+        FakeActivity(Context base) {
+            this.base = base;
+        }
+
+        @Override
+        public Context getBaseContext() {
+            return base;
+        }
+
+        @Override
+        public Resources getResources() {
+            return resources;
+        }
+    }
+
+}
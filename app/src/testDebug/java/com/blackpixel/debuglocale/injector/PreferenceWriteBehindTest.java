@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verify that bursts of preference writes reach the disk as few times as possible.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PreferenceWriteBehindTest {
+
+    private static final String KEY = DebugInjectorImpl.PREF_DEBUG_LOCALE;
+    private static final String UNSET_KEY = "pref_debug_unset";
+
+    @Mock
+    DebugSettingsStore settingsStore;
+
+    private ManualScheduler scheduler;
+    private PreferenceWriteBehind writer;
+
+    @Before
+    public void setUp() {
+        when(settingsStore.getString(eq(KEY), anyString())).thenReturn("en");
+
+        scheduler = new ManualScheduler();
+        writer = new PreferenceWriteBehind(settingsStore, scheduler);
+    }
+
+    @Test
+    public void burstOfSelectionsCommitsOnce() throws Exception {
+        writer.putString(KEY, "fr", "");
+        writer.putString(KEY, "es", "");
+        writer.putString(KEY, "zh", "");
+        writer.putString(KEY, "el", "");
+
+        verify(settingsStore, never()).putStrings(anyMapOf(String.class, String.class));
+
+        scheduler.runPending();
+
+        Map<String, String> expected = Collections.singletonMap(KEY, "el");
+        verify(settingsStore, times(1)).putStrings(expected);
+    }
+
+    @Test
+    public void unchangedValueIsDropped() throws Exception {
+        // the spurious onItemSelected fired while the spinner is set up
+        writer.putString(KEY, "en", "");
+
+        assertNull(scheduler.pending);
+        writer.flush();
+        verify(settingsStore, never()).putStrings(anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void revertingToStoredValueIsDropped() throws Exception {
+        writer.putString(KEY, "fr", "");
+        writer.putString(KEY, "en", "");
+
+        assertNull(scheduler.pending);
+        writer.flush();
+        verify(settingsStore, never()).putStrings(anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void flushOnPauseCommitsPendingWrite() throws Exception {
+        writer.putString(KEY, "fr", "");
+        assertNotNull(scheduler.pending);
+
+        writer.flush();
+        writer.flush();
+
+        verify(settingsStore, times(1)).putStrings(anyMapOf(String.class, String.class));
+        assertNull(scheduler.pending);
+    }
+
+    @Test
+    public void defaultForUnsetKeyIsDropped() throws Exception {
+        // first run, nothing stored yet and the screen writes what it shows
+        when(settingsStore.getString(eq(UNSET_KEY), anyString())).thenAnswer(
+                new Answer<String>() {
+                    public String answer(InvocationOnMock invocation) {
+                        return (String) invocation.getArguments()[1];
+                    }
+                });
+
+        writer.putString(UNSET_KEY, "0", "0");
+        writer.putString(UNSET_KEY, null, "0");
+
+        assertNull(scheduler.pending);
+        writer.flush();
+        verify(settingsStore, never()).putStrings(anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void resetToDefaultIsWritten() throws Exception {
+        writer.putString(KEY, null, "");
+        writer.flush();
+
+        verify(settingsStore).putStrings(Collections.<String, String>singletonMap(KEY, null));
+    }
+
+    private static class ManualScheduler implements PreferenceWriteBehind.Scheduler {
+
+        Runnable pending;
+
+        @Override
+        public void schedule(Runnable runnable, long delayMillis) {
+            pending = runnable;
+        }
+
+        @Override
+        public void cancel(Runnable runnable) {
+            if (pending == runnable) {
+                pending = null;
+            }
+        }
+
+        void runPending() {
+            Runnable runnable = pending;
+            pending = null;
+            if (runnable != null) {
+                runnable.run();
+            }
+        }
+    }
+
+}
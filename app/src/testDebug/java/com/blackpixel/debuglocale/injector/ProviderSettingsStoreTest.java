@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verify that secondary processes only cross into the main process when a value changed.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ProviderSettingsStoreTest {
+
+    private static final String KEY = DebugInjectorImpl.PREF_DEBUG_LOCALE;
+
+    @Mock
+    ContentResolver resolver;
+
+    @Mock
+    DebugSettingsStore.OnSettingChangedListener listener;
+
+    private FakeMainProcess mainProcess;
+    private ProviderSettingsStore store;
+
+    @Before
+    public void setUp() {
+        mainProcess = new FakeMainProcess();
+        store = new FakeProviderSettingsStore(resolver, mainProcess);
+        store.registerListener(listener);
+    }
+
+    @Test
+    public void valuesAreFetchedOnce() throws Exception {
+        mainProcess.values.put(KEY, "fr");
+
+        assertEquals("fr", store.getString(KEY, ""));
+        assertEquals("fr", store.getString(KEY, ""));
+        assertEquals(1, mainProcess.fetches);
+        verifyZeroInteractions(resolver);
+    }
+
+    @Test
+    public void missingValuesAreCached() throws Exception {
+        assertEquals("", store.getString(KEY, ""));
+        assertNull(store.getString(KEY, null));
+        assertEquals(1, mainProcess.fetches);
+    }
+
+    @Test
+    public void changeInvalidatesAndNotifies() throws Exception {
+        mainProcess.values.put(KEY, "fr");
+        store.getString(KEY, "");
+
+        mainProcess.values.put(KEY, "es");
+        store.onSettingChanged(KEY);
+
+        verify(listener).onSettingChanged(store, KEY);
+        assertEquals("es", store.getString(KEY, ""));
+        assertEquals(2, mainProcess.fetches);
+    }
+
+    @Test
+    public void changeOfUnknownKeyInvalidatesEverything() throws Exception {
+        mainProcess.values.put(KEY, "fr");
+        store.getString(KEY, "");
+
+        store.onSettingChanged(null);
+
+        verify(listener).onSettingChanged(store, KEY);
+        assertTrue(store.cache.isEmpty());
+    }
+
+    @Test
+    public void observerPassesChangedKey() throws Exception {
+        store.getString(KEY, "");
+        Uri uri = mock(Uri.class);
+        when(uri.getLastPathSegment()).thenReturn(KEY);
+
+        store.observer.onChange(false, uri);
+
+        verify(listener).onSettingChanged(store, KEY);
+        assertFalse(store.cache.containsKey(KEY));
+    }
+
+    @Test
+    public void writesAreVisibleBeforeTheyComeBack() throws Exception {
+        store.putStrings(Collections.singletonMap(KEY, "zh"));
+
+        assertEquals(1, mainProcess.sends);
+        assertEquals("zh", store.getString(KEY, ""));
+        assertEquals(0, mainProcess.fetches);
+    }
+
+    @Test
+    public void fetchRacingChangeIsNotCached() throws Exception {
+        mainProcess.values.put(KEY, "fr");
+        mainProcess.changeDuringFetch = store;
+
+        assertEquals("fr", store.getString(KEY, ""));
+        assertFalse(store.cache.containsKey(KEY));
+    }
+
+    @Test
+    public void mainProcessIsNotSecondary() throws Exception {
+        Context context = mock(Context.class);
+        when(context.getPackageName()).thenReturn("com.blackpixel.debuglocale.debug");
+        assertFalse(DebugInjectorImpl.isSecondaryProcess(context));
+    }
+
+    /**
+     * Settings held by the main process, Bundle has no implementation in unit tests.
+     */
+    private static class FakeMainProcess {
+        final Map<String, String> values = new HashMap<String, String>();
+        int fetches;
+        int sends;
+        ProviderSettingsStore changeDuringFetch;
+    }
+
+    private static class FakeProviderSettingsStore extends ProviderSettingsStore {
+        private final FakeMainProcess mainProcess;
+
+        FakeProviderSettingsStore(ContentResolver resolver, FakeMainProcess mainProcess) {
+            super(resolver, null);
+            this.mainProcess = mainProcess;
+        }
+
+        @Override
+        String fetch(String key) {
+            mainProcess.fetches++;
+            String value = mainProcess.values.get(key);
+            if (mainProcess.changeDuringFetch != null) {
+                mainProcess.changeDuringFetch.onSettingChanged(key);
+            }
+            return value;
+        }
+
+        @Override
+        void send(Map<String, String> values) {
+            mainProcess.sends++;
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.blackpixel.debuglocale.injector;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * In-memory SharedPreferences that notifies listeners synchronously and holds them weakly, like
+ * the framework does on the main thread.
+ *
+ * Like StrictMode's penaltyDeath(), it fails every access made from the thread passed to
+ * {@link #detectAccessOn(Thread)}. Any of them can block on the initial load or queue a disk
+ * write on a real device.
+ */
+class StrictSharedPreferences implements SharedPreferences {
+
+    private final Map<String, Object> values = new HashMap<String, Object>();
+    private final Map<OnSharedPreferenceChangeListener, Object> listeners =
+            new WeakHashMap<OnSharedPreferenceChangeListener, Object>();
+
+    private volatile Thread detectedThread;
+
+    /**
+     * Fails every following access from the thread, until {@link #permitAll()}.
+     */
+    void detectAccessOn(Thread thread) {
+        detectedThread = thread;
+    }
+
+    void permitAll() {
+        detectedThread = null;
+    }
+
+    private void onAccess(String method) {
+        if (Thread.currentThread() == detectedThread) {
+            throw new AssertionError("SharedPreferences." + method + "() on "
+                    + Thread.currentThread().getName());
+        }
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        onAccess("getAll");
+        return new HashMap<String, Object>(values);
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        onAccess("getString");
+        Object value = values.get(key);
+        return value != null ? (String) value : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        onAccess("getStringSet");
+        Object value = values.get(key);
+        return value != null ? (Set<String>) value : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        onAccess("getInt");
+        Object value = values.get(key);
+        return value != null ? (Integer) value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        onAccess("getLong");
+        Object value = values.get(key);
+        return value != null ? (Long) value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        onAccess("getFloat");
+        Object value = values.get(key);
+        return value != null ? (Float) value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        onAccess("getBoolean");
+        Object value = values.get(key);
+        return value != null ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        onAccess("contains");
+        return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        onAccess("edit");
+        return new StrictEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.put(listener, this);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private class StrictEditor implements Editor {
+
+        private final Map<String, Object> changes = new HashMap<String, Object>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, String value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            changes.put(key, values);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            changes.put(key, null);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            onAccess("commit");
+            write();
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            onAccess("apply");
+            write();
+        }
+
+        private void write() {
+            if (clear) {
+                values.clear();
+            }
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    values.remove(change.getKey());
+                } else {
+                    values.put(change.getKey(), change.getValue());
+                }
+                for (OnSharedPreferenceChangeListener listener
+                        : new ArrayList<OnSharedPreferenceChangeListener>(listeners.keySet())) {
+                    listener.onSharedPreferenceChanged(StrictSharedPreferences.this,
+                            change.getKey());
+                }
+            }
+        }
+    }
+
+}
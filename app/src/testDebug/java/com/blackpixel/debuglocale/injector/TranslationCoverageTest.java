@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verify coverage lookups against hand-built and generated indexes.
+ */
+public class TranslationCoverageTest {
+
+    private static final String[] KEYS = new String[70];
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = String.format("key_%02d", i);
+        }
+    }
+
+    // en translates everything, fr misses key_00 and key_65, fr-CA misses key_01
+    private final TranslationCoverage coverage = new TranslationCoverage(KEYS,
+            new String[]{"en", "fr", "fr-CA"},
+            new long[][]{
+                    {0L, 0L},
+                    {1L, 1L << 1},
+                    {1L << 1, 0L},
+            });
+
+    @Test
+    public void findFallsBackToLanguage() throws Exception {
+        assertEquals(1, coverage.find("fr"));
+        assertEquals(2, coverage.find("fr-CA"));
+        assertEquals(1, coverage.find("fr-FR"));
+        assertEquals(0, coverage.find("en-GB"));
+        assertEquals(TranslationCoverage.UNTRANSLATED, coverage.find("de"));
+        assertEquals(TranslationCoverage.UNTRANSLATED, coverage.find(""));
+    }
+
+    @Test
+    public void missingCounts() throws Exception {
+        assertEquals(70, coverage.keyCount());
+        assertEquals(0, coverage.missingCount(0));
+        assertEquals(2, coverage.missingCount(1));
+        assertEquals(1, coverage.missingCount(2));
+        assertEquals(70, coverage.missingCount(TranslationCoverage.UNTRANSLATED));
+
+        assertEquals(100, coverage.percentTranslated(0));
+        assertEquals(97, coverage.percentTranslated(1));
+        assertEquals(0, coverage.percentTranslated(TranslationCoverage.UNTRANSLATED));
+    }
+
+    @Test
+    public void isMissingAcrossWords() throws Exception {
+        assertTrue(coverage.isMissing(1, 0));
+        assertFalse(coverage.isMissing(1, 1));
+        assertTrue(coverage.isMissing(1, 65));
+        assertFalse(coverage.isMissing(1, 64));
+        assertFalse(coverage.isMissing(0, 65));
+        assertTrue(coverage.isMissing(TranslationCoverage.UNTRANSLATED, 3));
+    }
+
+    @Test
+    public void missingKeys() throws Exception {
+        assertEquals(Arrays.asList("key_00", "key_65"), coverage.missingKeys(1));
+        assertEquals(Collections.singletonList("key_01"), coverage.missingKeys(2));
+        assertEquals(Collections.<String>emptyList(), coverage.missingKeys(0));
+        assertEquals(70, coverage.missingKeys(TranslationCoverage.UNTRANSLATED).size());
+    }
+
+    @Test
+    public void noKeys() throws Exception {
+        TranslationCoverage empty = new TranslationCoverage(new String[0], new String[]{"fr"},
+                new long[][]{{}});
+        assertEquals(100, empty.percentTranslated(empty.find("fr")));
+        assertEquals(100, empty.percentTranslated(TranslationCoverage.UNTRANSLATED));
+    }
+
+    @Test
+    public void generatedIndexCoversCatalog() throws Exception {
+        TranslationCoverage generated = TranslationCoverage.get();
+        assertEquals(TranslationIndex.KEYS.length, generated.keyCount());
+        for (String code : LocaleCatalog.CODES) {
+            if (!code.isEmpty()) {
+                assertTrue(code, generated.find(code) != TranslationCoverage.UNTRANSLATED);
+            }
+        }
+        // the default language is the default folder
+        assertEquals(0, generated.missingCount(generated.find("en")));
+    }
+
+}
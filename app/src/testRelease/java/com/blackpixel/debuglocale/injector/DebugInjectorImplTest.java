@@ -31,6 +31,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -71,4 +72,49 @@ public class DebugInjectorImplTest {
         verifyNoMoreInteractions(debugInjector);
         verifyZeroInteractions(activity);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void wrapBaseContext() throws Exception {
+        Context base = mock(Context.class);
+        assertSame(base, debugInjector.wrapBaseContext(base));
+        verifyZeroInteractions(base);
+    }
+
+    @Test
+    public void setMetricsSink() throws Exception {
+        MetricsSink metricsSink = mock(MetricsSink.class);
+        debugInjector.setMetricsSink(metricsSink);
+        debugInjector.overrideLocale(mock(Activity.class));
+        verifyZeroInteractions(metricsSink);
+    }
+
+    @Test
+    public void getSettings() throws Exception {
+        assertSame(DebugSettings.DEFAULTS, debugInjector.getSettings());
+    }
+
+    @Test
+    public void traceSpans() throws Exception {
+        debugInjector.traceBegin("span");
+        debugInjector.traceEnd("span");
+        verify(debugInjector).traceBegin("span");
+        verify(debugInjector).traceEnd("span");
+        verifyNoMoreInteractions(debugInjector);
+    }
+
+    @Test
+    public void configurationOverrides() throws Exception {
+        debugInjector.setConfigurationOverrides(new ConfigurationOverrides(
+                ConfigurationOverrides.LAYOUT_DIRECTION_RTL, 2f, 0));
+        assertSame(ConfigurationOverrides.NONE, debugInjector.getConfigurationOverrides());
+    }
+
+    @Test
+    public void registerOverrideListener() throws Exception {
+        Activity activity = mock(Activity.class);
+        OnOverrideChangedListener listener = mock(OnOverrideChangedListener.class);
+        debugInjector.registerOverrideListener(activity, listener);
+        debugInjector.unregisterOverrideListener(activity);
+        verifyZeroInteractions(activity, listener);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale;
+
+import android.widget.TextView;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date rendering done by MainActivity.updateUi() on every resume.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateFormattingBenchmark {
+
+    private final Locale locale = Locale.FRENCH;
+    private final long timeMillis = 1479081600000L;
+
+    private DateTimeRenderer renderer;
+    private TextView textView;
+
+    @Setup
+    public void setUp() {
+        renderer = new DateTimeRenderer();
+        textView = new TextView();
+    }
+
+    /**
+     * The original updateUi(): a fresh DateFormat and Date every time.
+     */
+    @Benchmark
+    public String uncached() {
+        return DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, locale)
+                .format(new Date(timeMillis));
+    }
+
+    @Benchmark
+    public String cached() {
+        return DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, locale)
+                .format(new Date(timeMillis));
+    }
+
+    /**
+     * The current updateUi(): cached DateFormat rendered into reused buffers.
+     */
+    @Benchmark
+    public TextView cachedIntoBuffer() {
+        renderer.render(textView,
+                DateFormatCache.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG, locale),
+                timeMillis);
+        return textView;
+    }
+
+}
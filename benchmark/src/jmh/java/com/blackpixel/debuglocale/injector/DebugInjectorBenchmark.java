@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import android.app.Activity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths hit by MainActivity on every resume.
+ *
+ * Run with {@code ./gradlew :benchmark:jmh}; the gc profiler reports the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DebugInjectorBenchmark {
+
+    private Locale originalDefaultLocale;
+
+    private FakeContext singletonContext;
+
+    private FakeContext coldContext;
+    private Activity coldActivity;
+
+    private FakeContext warmContext;
+    private Activity warmActivity;
+    private DebugInjectorImpl warmInjector;
+
+    private boolean toggle;
+
+    @Setup
+    public void setUp() {
+        originalDefaultLocale = Locale.getDefault();
+
+        singletonContext = new FakeContext(originalDefaultLocale);
+        DebugInjector.getInstance(singletonContext);
+
+        coldContext = new FakeContext(originalDefaultLocale);
+        coldActivity = new Activity(coldContext);
+
+        warmContext = new FakeContext(originalDefaultLocale);
+        warmActivity = new Activity(warmContext);
+        warmInjector = new DebugInjectorImpl(warmContext);
+        warmInjector.overrideLocale(warmActivity);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Locale.setDefault(originalDefaultLocale);
+    }
+
+    @Benchmark
+    public DebugInjector getInstance() {
+        return DebugInjector.getInstance(singletonContext);
+    }
+
+    /**
+     * First resume of a new process: construct the injector and resolve the stored override.
+     */
+    @Benchmark
+    public boolean overrideLocaleCold() {
+        // the preferences only hold listeners weakly, discarded injectors are collected
+        return new DebugInjectorImpl(coldContext).overrideLocale(coldActivity);
+    }
+
+    /**
+     * Every later resume while the override is unchanged.
+     */
+    @Benchmark
+    public boolean overrideLocaleWarmNoChange() {
+        return warmInjector.overrideLocale(warmActivity);
+    }
+
+    /**
+     * A resume right after the override was changed from the settings screen.
+     */
+    @Benchmark
+    public boolean overrideLocaleChanged() {
+        toggle = !toggle;
+        warmContext.sharedPrefs.edit()
+                .putString(DebugInjectorImpl.PREF_DEBUG_LOCALE, toggle ? "fr" : "es")
+                .apply();
+        return warmInjector.overrideLocale(warmActivity);
+    }
+
+}
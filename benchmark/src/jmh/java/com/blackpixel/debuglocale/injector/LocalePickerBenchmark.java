@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016. BlackPixel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT
+ * OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.blackpixel.debuglocale.injector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering the debug locale picker over every available locale, which has to fit in a frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalePickerBenchmark {
+
+    @Param({"e", "en", "chin", "tw"})
+    public String query;
+
+    private LocalePickerIndex index;
+    private int[] candidates;
+    private int candidateCount;
+    private int[] results;
+
+    @Setup
+    public void setUp() {
+        index = LocalePickerIndex.loadAvailable();
+        results = new int[index.size()];
+        candidates = new int[index.size()];
+        candidateCount = index.filter(query.substring(0, 1), null, 0, candidates);
+    }
+
+    /**
+     * Typing a query from scratch, or pasting one.
+     */
+    @Benchmark
+    public int filter() {
+        return index.filter(query, null, 0, results);
+    }
+
+    /**
+     * Typing one more character, only the matches of the shorter query are searched.
+     */
+    @Benchmark
+    public int filterNarrowed() {
+        return index.filter(query, candidates, candidateCount, results);
+    }
+
+    /**
+     * What the settings screen shows before the display names are ready.
+     */
+    @Benchmark
+    public LocalePickerIndex buildWithoutDisplayNames() {
+        return LocalePickerIndex.withoutDisplayNames();
+    }
+
+}